@@ -0,0 +1,275 @@
+package com.task05;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local check of the custom-runtime build: serves the Lambda runtime API and a DynamoDB stand-in on
+ * localhost, starts the given command against them and sends it function URL events: a valid event, which
+ * must be stored and answered with 201, one without a body, answered with 500, and two batches, a JSON array
+ * and NDJSON, each with one invalid event, answered with 207. An empty array, an array over the batch limit
+ * and a malformed pretty-printed object are answered with 400 and store nothing. The stand-in leaves half of the first
+ * BatchWriteItem unprocessed, so the retry of unprocessed items runs too. Prints the time from
+ * process start to the first poll of the runtime API and, per event, the status and the time to its
+ * response; exits with 1 when a status is not the expected one or the function reports an init error.
+ * <p>
+ * The command is the native binary or the same class on a JVM, which gives the two startups side by side.
+ * <p>
+ * Usage: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.task05.NativeHarness -Dexec.args="target/bootstrap"}
+ * or with {@code -Dexec.args="java -cp task05-1.0.0.jar com.task05.NativeBootstrap"}
+ */
+public class NativeHarness {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final BlockingQueue<Invocation> pending = new LinkedBlockingQueue<>();
+    private final Map<String, CompletableFuture<byte[]>> responses = new ConcurrentHashMap<>();
+    private final CompletableFuture<byte[]> initError = new CompletableFuture<>();
+    private final CompletableFuture<Long> firstPoll = new CompletableFuture<>();
+    private final AtomicInteger storedItems = new AtomicInteger();
+    private final AtomicInteger batchWrites = new AtomicInteger();
+    private long started;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Usage: NativeHarness <command> [args...]");
+        }
+        NativeHarness harness = new NativeHarness();
+        HttpServer server = harness.serve();
+        String address = "127.0.0.1:" + server.getAddress().getPort();
+
+        ProcessBuilder builder = new ProcessBuilder(new ArrayList<>(Arrays.asList(args))).inheritIO();
+        builder.environment().put("AWS_LAMBDA_RUNTIME_API", address);
+        builder.environment().put("AWS_LAMBDA_FUNCTION_NAME", "api_handler");
+        builder.environment().put("AWS_LAMBDA_FUNCTION_MEMORY_SIZE", "512");
+        builder.environment().put("DYNAMODB_ENDPOINT", "http://" + address);
+        builder.environment().put("AWS_REGION", "eu-central-1");
+        builder.environment().put("region", "eu-central-1");
+        builder.environment().put("table", "Events");
+        // The stand-in does not check signatures
+        builder.environment().put("AWS_ACCESS_KEY_ID", "local");
+        builder.environment().put("AWS_SECRET_ACCESS_KEY", "local");
+
+        harness.started = System.nanoTime();
+        Process process = builder.start();
+        boolean passed;
+        try {
+            passed = harness.run();
+        } finally {
+            process.destroy();
+            server.stop(0);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        Map<String, Object> body = new HashMap<>();
+        body.put("principalId", 1);
+        body.put("content", Map.of("name", "John", "surname", "Doe"));
+        boolean passed = check("event", event(objectMapper.writeValueAsString(body)), 201);
+        System.out.printf("%-22s %6s %9d ms%n", "(first poll)", "", firstPoll.getNow(-1L));
+        passed &= check("no body", event(null), 500);
+
+        List<Object> batch = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            batch.add(Map.of("principalId", i, "content", Map.of("name", "Event " + i)));
+        }
+        batch.add(Map.of("content", Map.of("name", "No principal")));
+        passed &= check("array x61", event(objectMapper.writeValueAsString(batch)), 207);
+        passed &= check("ndjson x3", event("{\"principalId\":1,\"content\":{\"name\":\"A\"}}\n"
+                + "{\"principalId\":2,\"content\":\n"
+                + "{\"principalId\":3,\"content\":{\"name\":\"C\"}}\n"), 207);
+
+        passed &= check("empty array", event("[]"), 400);
+        List<Object> oversized = new ArrayList<>();
+        for (int i = 0; i < 501; i++) {
+            oversized.add(Map.of("principalId", i, "content", Map.of("name", "Event " + i)));
+        }
+        passed &= check("array x501", event(objectMapper.writeValueAsString(oversized)), 400);
+        passed &= check("malformed object", event("{\n  \"principalId\": 1,\n  \"content\": {\n    \"name\": \"A\"\n}\n"), 400);
+
+        System.out.println("stored items: " + storedItems.get() + ", BatchWriteItem calls: " + batchWrites.get());
+        return passed && storedItems.get() == 63;
+    }
+
+    private boolean check(String name, byte[] event, int expectedStatus) throws Exception {
+        String requestId = UUID.randomUUID().toString();
+        CompletableFuture<byte[]> response = new CompletableFuture<>();
+        responses.put(requestId, response);
+        pending.add(new Invocation(requestId, event));
+
+        Object outcome;
+        try {
+            outcome = CompletableFuture.anyOf(response, initError.thenApply(InitError::new)).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.out.printf("%-22s %6s %9d ms  %s%n", name, "-", millis(), e);
+            return false;
+        }
+        if (outcome instanceof InitError) {
+            System.out.printf("%-22s %6s %9d ms  init error: %s%n", name, "-", millis(),
+                    new String(((InitError) outcome).body, StandardCharsets.UTF_8));
+            return false;
+        }
+
+        Object status = objectMapper.readValue((byte[]) outcome, Map.class).get("statusCode");
+        System.out.printf("%-22s %6s %9d ms%n", name, status, millis());
+        return Integer.valueOf(expectedStatus).equals(status);
+    }
+
+    private HttpServer serve() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // The next-invocation long poll holds its thread until there is an event
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "runtime-api");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/2018-06-01/runtime/", this::handleRuntime);
+        server.createContext("/", this::handleDynamoDb);
+        server.start();
+        return server;
+    }
+
+    private void handleRuntime(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = readBody(exchange);
+        try {
+            if (path.endsWith("/invocation/next")) {
+                firstPoll.complete(millis());
+                Invocation invocation = pending.take();
+                exchange.getResponseHeaders().add("Lambda-Runtime-Aws-Request-Id", invocation.requestId);
+                exchange.getResponseHeaders().add("Lambda-Runtime-Deadline-Ms",
+                        String.valueOf(System.currentTimeMillis() + TIMEOUT_SECONDS * 1000));
+                exchange.getResponseHeaders().add("Lambda-Runtime-Invoked-Function-Arn",
+                        "arn:aws:lambda:local:000000000000:function:api_handler");
+                respond(exchange, 200, "application/json", invocation.event);
+            } else if (path.endsWith("/init/error")) {
+                initError.complete(body);
+                respond(exchange, 202, null, new byte[0]);
+            } else if (path.endsWith("/response") || path.endsWith("/error")) {
+                String[] segments = path.split("/");
+                CompletableFuture<byte[]> response = responses.remove(segments[segments.length - 2]);
+                if (response != null) {
+                    if (path.endsWith("/error")) {
+                        response.completeExceptionally(new IllegalStateException(new String(body, StandardCharsets.UTF_8)));
+                    } else {
+                        response.complete(body);
+                    }
+                }
+                respond(exchange, 202, null, new byte[0]);
+            } else {
+                respond(exchange, 404, null, new byte[0]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    // DynamoDB JSON protocol: the operation is in X-Amz-Target, e.g. DynamoDB_20120810.PutItem
+    private void handleDynamoDb(HttpExchange exchange) throws IOException {
+        String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+        byte[] body = readBody(exchange);
+        if (target != null && target.endsWith(".PutItem")) {
+            storedItems.incrementAndGet();
+            respond(exchange, 200, "application/x-amz-json-1.0", "{}".getBytes(StandardCharsets.UTF_8));
+        } else if (target != null && target.endsWith(".BatchWriteItem")) {
+            Map<String, List<Object>> requestItems = (Map<String, List<Object>>) objectMapper.readValue(body, Map.class).get("RequestItems");
+            Map<String, List<Object>> unprocessed = new HashMap<>();
+            boolean throttle = batchWrites.getAndIncrement() == 0;
+            for (Map.Entry<String, List<Object>> table : requestItems.entrySet()) {
+                List<Object> writes = table.getValue();
+                // Like throttling: the first call writes only half of its items
+                int processed = throttle ? writes.size() / 2 : writes.size();
+                storedItems.addAndGet(processed);
+                if (processed < writes.size()) {
+                    unprocessed.put(table.getKey(), writes.subList(processed, writes.size()));
+                }
+            }
+            respond(exchange, 200, "application/x-amz-json-1.0", objectMapper.writeValueAsBytes(Map.of("UnprocessedItems", unprocessed)));
+        } else {
+            respond(exchange, 400, "application/x-amz-json-1.0", ("{\"__type\":\"com.amazon.coral.validate#ValidationException\","
+                    + "\"message\":\"Not supported by the stand-in: " + target + "\"}").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().add("Content-Type", contentType);
+        }
+        exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    private long millis() {
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+
+    // Function URL event (payload format 2.0)
+    private static byte[] event(String body) throws IOException {
+        Map<String, Object> http = new HashMap<>();
+        http.put("method", "POST");
+        http.put("path", "/");
+        Map<String, Object> requestContext = new HashMap<>();
+        requestContext.put("http", http);
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("version", "2.0");
+        event.put("rawPath", "/");
+        event.put("headers", Map.of("content-type", "application/json"));
+        event.put("requestContext", requestContext);
+        event.put("isBase64Encoded", false);
+        event.put("body", body);
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    private static final class Invocation {
+        final String requestId;
+        final byte[] event;
+
+        Invocation(String requestId, byte[] event) {
+            this.requestId = requestId;
+            this.event = event;
+        }
+    }
+
+    private static final class InitError {
+        final byte[] body;
+
+        InitError(byte[] body) {
+            this.body = body;
+        }
+    }
+}
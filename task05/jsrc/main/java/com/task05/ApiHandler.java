@@ -1,13 +1,22 @@
 package com.task05;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
 import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayV2HTTPResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.syndicate.deployment.annotations.environment.EnvironmentVariable;
 import com.syndicate.deployment.annotations.environment.EnvironmentVariables;
@@ -19,10 +28,20 @@ import com.syndicate.deployment.model.RetentionSetting;
 import com.syndicate.deployment.model.lambda.url.AuthType;
 import com.syndicate.deployment.model.lambda.url.InvokeMode;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
 @LambdaHandler(
         lambdaName = "api_handler",
@@ -38,14 +57,71 @@ import java.util.UUID;
 @DependsOn(name = "Events", resourceType = ResourceType.DYNAMODB_TABLE)
 @EnvironmentVariables(value = {
         @EnvironmentVariable(key = "region", value = "${region}"),
-        @EnvironmentVariable(key = "table", value = "${target_table}")})
+        @EnvironmentVariable(key = "table", value = "${target_table}"),
+        @EnvironmentVariable(key = "batch_write_concurrency", value = "8")})
 public class ApiHandler implements RequestHandler<Map<String, Object>, APIGatewayV2HTTPResponse> {
+    // BatchWriteItem takes at most 25 items per call
+    private static final int BATCH_WRITE_SIZE = 25;
+    // Bounds the items held and the writes made by one invocation
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final int MAX_WRITE_ATTEMPTS = 8;
+    private static final long BASE_BACKOFF_MILLIS = 25;
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+    // Time kept for the response after the last backoff
+    private static final int DEADLINE_MARGIN_MILLIS = 1000;
+
     private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final AmazonDynamoDB dynamoDB = AmazonDynamoDBClientBuilder.defaultClient();
+    // Elements stay untyped so that one non-object event fails on its own, not the whole batch
+    private static final TypeReference<List<Object>> EVENT_LIST = new TypeReference<List<Object>>() {
+    };
+    static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<Map<String, Object>>() {
+    };
+    private static final AmazonDynamoDB dynamoDB = createClient();
+    private static final ExecutorService batchWriters = createBatchWriters();
+
+    // DYNAMODB_ENDPOINT points the client at a local stand-in (see NativeHarness); it is not set on Lambda
+    private static AmazonDynamoDB createClient() {
+        String endpoint = System.getenv("DYNAMODB_ENDPOINT");
+        if (endpoint == null) {
+            return AmazonDynamoDBClientBuilder.defaultClient();
+        }
+        return AmazonDynamoDBClientBuilder.standard()
+                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, System.getenv("region")))
+                .build();
+    }
+
+    // One container serves one request at a time, so the pool size bounds the parallel writes of a batch
+    private static ExecutorService createBatchWriters() {
+        String concurrency = System.getenv("batch_write_concurrency");
+        return Executors.newFixedThreadPool(concurrency != null ? Integer.parseInt(concurrency) : 8, runnable -> {
+            Thread thread = new Thread(runnable, "batch-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     @Override
     public APIGatewayV2HTTPResponse handleRequest(Map<String, Object> event, Context context) {
         LambdaLogger logger = context.getLogger();
+        List<Object> batch;
+        try {
+            batch = parseBatch(requestBody(event));
+        } catch (JsonProcessingException e) {
+            logger.log("Rejected batch: " + e.getOriginalMessage());
+            return createBadRequestResponse("Malformed JSON: " + e.getOriginalMessage());
+        } catch (IllegalArgumentException | IOException e) {
+            logger.log("Rejected batch: " + e.getMessage());
+            return createBadRequestResponse(e.getMessage());
+        }
+        try {
+            if (batch != null) {
+                logger.log("Received batch of " + batch.size() + " events");
+                return handleBatch(batch, context);
+            }
+        } catch (Exception e) {
+            logger.log("Error in processing batch: " + e.getMessage());
+            return createErrorResponse();
+        }
         logger.log("Received event: " + event);
 
         try {
@@ -66,8 +142,197 @@ public class ApiHandler implements RequestHandler<Map<String, Object>, APIGatewa
         }
     }
 
+    // A JSON array or NDJSON of events; null when the body holds a single event.
+    // Empty input, more than MAX_BATCH_SIZE events and a body that is no JSON at all are rejected
+    private List<Object> parseBatch(String body) throws IOException {
+        if (body == null) {
+            return null;
+        }
+        String trimmed = body.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Empty request body");
+        }
+        if (trimmed.startsWith("[")) {
+            return checkSize(objectMapper.readValue(trimmed, EVENT_LIST));
+        }
+
+        List<Object> events = new ArrayList<>();
+        try (MappingIterator<Object> values = objectMapper.readerFor(Object.class).readValues(trimmed)) {
+            while (values.hasNext()) {
+                events.add(values.next());
+            }
+        } catch (IOException | RuntimeException e) {
+            return parseLines(trimmed);
+        }
+        return events.size() > 1 ? checkSize(events) : null;
+    }
+
+    // NDJSON with a broken line: each line is parsed on its own, so only the broken ones fail.
+    // When no line holds an object, the body is one malformed document (a pretty-printed one spans lines)
+    private List<Object> parseLines(String body) {
+        List<Object> events = new ArrayList<>();
+        boolean anyObject = false;
+        int lineNumber = 0;
+        for (String line : body.split("\r?\n")) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                Object event = objectMapper.readValue(line, Object.class);
+                anyObject |= event instanceof Map;
+                events.add(event);
+            } catch (IOException e) {
+                events.add(new MalformedEvent("Malformed JSON on line " + lineNumber));
+            }
+        }
+        if (!anyObject) {
+            throw new IllegalArgumentException("Malformed JSON");
+        }
+        return events.size() > 1 ? checkSize(events) : null;
+    }
+
+    private static List<Object> checkSize(List<Object> events) {
+        if (events.isEmpty()) {
+            throw new IllegalArgumentException("Empty batch");
+        }
+        if (events.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " events per request, got " + events.size());
+        }
+        return events;
+    }
+
+    private String requestBody(Map<String, Object> event) {
+        String body = (String) event.get("body");
+        if (body != null && Boolean.TRUE.equals(event.get("isBase64Encoded"))) {
+            return new String(Base64.getDecoder().decode(body), StandardCharsets.UTF_8);
+        }
+        return body;
+    }
+
+    // Every event is validated on its own; the valid ones are written in parallel chunks of 25.
+    // 201 when all were stored, otherwise 207 with the status of each event
+    private APIGatewayV2HTTPResponse handleBatch(List<Object> events, Context context) throws Exception {
+        int[] statuses = new int[events.size()];
+        String[] errors = new String[events.size()];
+        String[] ids = new String[events.size()];
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        List<Integer> itemIndexes = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            try {
+                Map<String, Object> body = eventBody(events.get(i));
+                Map<String, AttributeValue> item = createEventItem(extractPrincipalId(body), extractContent(body));
+                items.add(item);
+                itemIndexes.add(i);
+                ids[i] = item.get("id").getS();
+            } catch (RuntimeException e) {
+                statuses[i] = 400;
+                errors[i] = e.getMessage();
+            }
+        }
+
+        List<Future<?>> writes = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += BATCH_WRITE_SIZE) {
+            int to = Math.min(from + BATCH_WRITE_SIZE, items.size());
+            List<Map<String, AttributeValue>> chunk = items.subList(from, to);
+            List<Integer> chunkIndexes = itemIndexes.subList(from, to);
+            writes.add(batchWriters.submit(() -> writeChunk(chunk, chunkIndexes, statuses, errors, context)));
+        }
+        for (Future<?> write : writes) {
+            write.get();
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(events.size());
+        int stored = 0;
+        for (int i = 0; i < events.size(); i++) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", i);
+            result.put("status", statuses[i]);
+            if (statuses[i] == 201) {
+                stored++;
+                result.put("id", ids[i]);
+            } else {
+                result.put("error", errors[i]);
+            }
+            results.add(result);
+        }
+
+        int statusCode = stored == events.size() ? 201 : 207;
+        Map<String, Object> responseBody = new LinkedHashMap<>();
+        responseBody.put("statusCode", statusCode);
+        responseBody.put("stored", stored);
+        responseBody.put("failed", events.size() - stored);
+        responseBody.put("results", results);
+        context.getLogger().log("Stored " + stored + " of " + events.size() + " events");
+
+        return APIGatewayV2HTTPResponse.builder()
+                .withStatusCode(statusCode)
+                .withBody(objectMapper.writeValueAsString(responseBody))
+                .withHeaders(Map.of("Content-Type", "application/json"))
+                .build();
+    }
+
+    private Map<String, Object> eventBody(Object event) {
+        if (event instanceof MalformedEvent) {
+            throw new IllegalArgumentException(((MalformedEvent) event).error);
+        }
+        if (!(event instanceof Map)) {
+            throw new IllegalArgumentException("Event must be a JSON object");
+        }
+        return objectMapper.convertValue(event, JSON_OBJECT);
+    }
+
+    // Items DynamoDB leaves unprocessed (throttling) are sent again after an exponential backoff with full jitter,
+    // until MAX_WRITE_ATTEMPTS or the function deadline; what is still left then gets 503
+    private void writeChunk(List<Map<String, AttributeValue>> items, List<Integer> indexes, int[] statuses, String[] errors, Context context) {
+        String tableName = System.getenv("table");
+        Map<String, Integer> indexById = new HashMap<>();
+        List<WriteRequest> pending = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            indexById.put(items.get(i).get("id").getS(), indexes.get(i));
+            pending.add(new WriteRequest().withPutRequest(new PutRequest().withItem(items.get(i))));
+            statuses[indexes.get(i)] = 201;
+        }
+
+        int failureStatus = 503;
+        String failure = "Not stored: write capacity exceeded, retry later";
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                long backoff = ThreadLocalRandom.current().nextLong(Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt) + 1);
+                if (attempt >= MAX_WRITE_ATTEMPTS || context.getRemainingTimeInMillis() < backoff + DEADLINE_MARGIN_MILLIS) {
+                    break;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            try {
+                BatchWriteItemResult result = dynamoDB.batchWriteItem(new BatchWriteItemRequest()
+                        .withRequestItems(Map.of(tableName, pending)));
+                List<WriteRequest> unprocessed = result.getUnprocessedItems() != null
+                        ? result.getUnprocessedItems().get(tableName)
+                        : null;
+                pending = unprocessed != null ? unprocessed : List.of();
+            } catch (AmazonClientException e) {
+                // The SDK has already retried throttling and 5xx errors of the call itself
+                failureStatus = e.isRetryable() ? 503 : 500;
+                failure = "Not stored: " + e.getMessage();
+                break;
+            }
+        }
+
+        for (WriteRequest request : pending) {
+            int index = indexById.get(request.getPutRequest().getItem().get("id").getS());
+            statuses[index] = failureStatus;
+            errors[index] = failure;
+        }
+    }
+
     private Map<String, Object> parseRequestBody(Map<String, Object> event, LambdaLogger logger) throws Exception {
-        String bodyString = (String) event.get("body");
+        String bodyString = requestBody(event);
         if (bodyString == null) {
             throw new IllegalArgumentException("Missing request body");
         }
@@ -145,6 +410,20 @@ public class ApiHandler implements RequestHandler<Map<String, Object>, APIGatewa
         return result;
     }
 
+    private APIGatewayV2HTTPResponse createBadRequestResponse(String message) {
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(Map.of("message", message));
+        } catch (JsonProcessingException e) {
+            body = "{\"message\": \"Bad request\"}";
+        }
+        return APIGatewayV2HTTPResponse.builder()
+                .withStatusCode(400)
+                .withBody(body)
+                .withHeaders(Map.of("Content-Type", "application/json"))
+                .build();
+    }
+
     private APIGatewayV2HTTPResponse createErrorResponse() {
         return APIGatewayV2HTTPResponse.builder()
                 .withStatusCode(500)
@@ -152,4 +431,12 @@ public class ApiHandler implements RequestHandler<Map<String, Object>, APIGatewa
                 .withHeaders(Map.of("Content-Type", "application/json"))
                 .build();
     }
+
+    private static final class MalformedEvent {
+        final String error;
+
+        MalformedEvent(String error) {
+            this.error = error;
+        }
+    }
 }
@@ -0,0 +1,160 @@
+package com.task11;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local check of {@link ParallelScanExporter} on the in-memory reservations table: seeds reservations next to
+ * the internal slot-lock and occupancy items, exports them the way {@link ReservationExportHandler} does (the
+ * same scan request, paged, into a gzip stream) with 1, 4 and 7 segments, and reads the result back. Every
+ * reservation must come out exactly once as its own NDJSON line with the stored attributes, and no internal
+ * item may come out. A segment whose scan fails must fail the whole export. Exits with 1 on any mismatch.
+ * <p>
+ * Usage: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.task11.ExportCheck}
+ */
+public class ExportCheck {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String TABLE = "reservations";
+    private static final int RESERVATIONS = 2_500;
+    // Маленькі сторінки, щоб кожен сегмент пройшов кілька ExclusiveStartKey
+    private static final int PAGE_SIZE = 100;
+
+    public static void main(String[] args) throws Exception {
+        InMemoryDynamoDb dynamoDb = new InMemoryDynamoDb(0).createTable(TABLE, "id");
+        Map<String, Map<String, Object>> expected = seed(dynamoDb);
+
+        boolean passed = true;
+        for (int segments : new int[]{1, 4, 7}) {
+            passed &= check(dynamoDb, segments, expected);
+        }
+        passed &= checkFailedSegment(dynamoDb);
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static Map<String, Map<String, Object>> seed(InMemoryDynamoDb dynamoDb) {
+        Map<String, Map<String, Object>> expected = new HashMap<>();
+        for (int i = 0; i < RESERVATIONS; i++) {
+            String id = String.format("r-%05d", i);
+            String date = "2026-11-" + String.format("%02d", 1 + i % 28);
+            String start = String.format("%02d:00", 10 + i % 10);
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("id", AttributeValue.fromS(id));
+            item.put("tableNumber", AttributeValue.fromN(String.valueOf(1 + i % 50)));
+            item.put("clientName", AttributeValue.fromS("Client \"" + i + "\""));
+            item.put("date", AttributeValue.fromS(date));
+            item.put("slotTimeStart", AttributeValue.fromS(start));
+            item.put("venue", AttributeValue.fromS(i % 3 == 0 ? "terrace" : "main"));
+            put(dynamoDb, item);
+
+            Map<String, Object> json = new HashMap<>();
+            json.put("id", id);
+            json.put("tableNumber", 1 + i % 50);
+            json.put("clientName", "Client \"" + i + "\"");
+            json.put("date", date);
+            json.put("slotTimeStart", start);
+            json.put("venue", i % 3 == 0 ? "terrace" : "main");
+            expected.put(id, json);
+
+            // Службові записи лежать у тій самій таблиці й не мають потрапити в експорт
+            put(dynamoDb, Map.of("id", AttributeValue.fromS(ReservationService.INTERNAL_ID_PREFIX + "lock#" + id)));
+            if (i % 10 == 0) {
+                put(dynamoDb, Map.of("id", AttributeValue.fromS(ReservationService.INTERNAL_ID_PREFIX + "occupancy#" + i)));
+            }
+        }
+        return expected;
+    }
+
+    private static void put(InMemoryDynamoDb dynamoDb, Map<String, AttributeValue> item) {
+        dynamoDb.putItem(PutItemRequest.builder().tableName(TABLE).item(item).build()).join();
+    }
+
+    private static boolean check(InMemoryDynamoDb dynamoDb, int segments, Map<String, Map<String, Object>> expected)
+            throws IOException, InterruptedException {
+        ParallelScanExporter exporter = new ParallelScanExporter(pagedScanner(dynamoDb), segments);
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        long exported;
+        try (OutputStream out = new GZIPOutputStream(file, 64 * 1024)) {
+            exported = exporter.export(out);
+        }
+
+        Map<String, Map<String, Object>> unseen = new HashMap<>(expected);
+        List<String> problems = new ArrayList<>();
+        int lines = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(file.toByteArray())), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                Map<String, Object> row = objectMapper.readValue(line, Map.class);
+                Map<String, Object> stored = unseen.remove((String) row.get("id"));
+                if (stored == null) {
+                    problems.add("unexpected or repeated row " + row.get("id"));
+                } else if (!stored.equals(row)) {
+                    problems.add("row " + row.get("id") + " is " + row + ", stored " + stored);
+                }
+            }
+        }
+        if (exported != expected.size()) {
+            problems.add("export() counted " + exported);
+        }
+        if (!unseen.isEmpty()) {
+            problems.add(unseen.size() + " reservations missing");
+        }
+
+        System.out.printf("segments=%d rows=%d lines=%d gzipBytes=%d %s%n", segments, exported, lines, file.size(),
+                problems.isEmpty() ? "ok" : problems.subList(0, Math.min(5, problems.size())));
+        return problems.isEmpty();
+    }
+
+    private static boolean checkFailedSegment(InMemoryDynamoDb dynamoDb) throws InterruptedException {
+        ParallelScanExporter.SegmentScanner scanner = pagedScanner(dynamoDb);
+        ParallelScanExporter exporter = new ParallelScanExporter((segment, totalSegments) -> {
+            if (segment == 2) {
+                throw new IllegalStateException("ProvisionedThroughputExceededException");
+            }
+            return scanner.scan(segment, totalSegments);
+        }, 4);
+        try {
+            exporter.export(new ByteArrayOutputStream());
+        } catch (IOException e) {
+            System.out.println("failed segment: " + e.getMessage() + " ok");
+            return true;
+        }
+        System.out.println("failed segment: export() returned normally");
+        return false;
+    }
+
+    // The production scan request, paged through ExclusiveStartKey like scanPaginator does
+    private static ParallelScanExporter.SegmentScanner pagedScanner(InMemoryDynamoDb dynamoDb) {
+        return (segment, totalSegments) -> {
+            ScanRequest request = ParallelScanExporter.reservationsScan(TABLE, segment, totalSegments).toBuilder()
+                    .limit(PAGE_SIZE)
+                    .build();
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            ScanResponse page;
+            do {
+                page = dynamoDb.scan(request).join();
+                items.addAll(page.items());
+                request = request.toBuilder().exclusiveStartKey(page.lastEvaluatedKey()).build();
+            } while (page.lastEvaluatedKey() != null && !page.lastEvaluatedKey().isEmpty());
+            return items;
+        };
+    }
+}
@@ -0,0 +1,218 @@
+package com.task11;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderAsyncClient;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminAddUserToGroupRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminAddUserToGroupResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminInitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminInitiateAuthResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AttributeType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AuthenticationResultType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.DescribeUserPoolRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.DescribeUserPoolResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.NotAuthorizedException;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UserNotFoundException;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UsernameExistsException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// In-process stand-in for the Cognito user pool behind the SDK v2 async interface, for local runs of
+// the booking API (see LoadDriver). Users live in memory; id tokens are RS256-signed with a key pair
+// generated at start-up, and verifier() trusts that key through a file: JWKS, so protected routes go
+// through the same signature and claim checks as in Lambda.
+class InMemoryCognito implements CognitoIdentityProviderAsyncClient {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+    private static final long TOKEN_TTL_SECONDS = 3600;
+
+    private final String userPoolId;
+    private final String clientId;
+    private final String issuer;
+    private final String keyId = UUID.randomUUID().toString();
+    private final KeyPair keyPair;
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final long latencyMicros;
+
+    InMemoryCognito(String userPoolId, String clientId, long latencyMicros) {
+        this.userPoolId = userPoolId;
+        this.clientId = clientId;
+        this.issuer = "https://cognito-idp.local.amazonaws.com/" + userPoolId;
+        this.latencyMicros = latencyMicros;
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            this.keyPair = generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("RSA is not available", e);
+        }
+    }
+
+    // A verifier for this pool's tokens; the JWKS is written to a temporary file
+    JwtVerifier verifier() throws IOException {
+        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+        Map<String, String> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "RSA");
+        jwk.put("kid", keyId);
+        jwk.put("alg", "RS256");
+        jwk.put("use", "sig");
+        jwk.put("n", BASE64_URL.encodeToString(unsigned(publicKey.getModulus())));
+        jwk.put("e", BASE64_URL.encodeToString(unsigned(publicKey.getPublicExponent())));
+
+        Path jwks = Files.createTempFile("jwks-" + userPoolId, ".json");
+        jwks.toFile().deleteOnExit();
+        Files.write(jwks, objectMapper.writeValueAsBytes(Map.of("keys", List.of(jwk))));
+        return new JwtVerifier(jwks.toUri().toString(), issuer, clientId);
+    }
+
+    @Override
+    public String serviceName() {
+        return "cognito-idp";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public CompletableFuture<AdminCreateUserResponse> adminCreateUser(AdminCreateUserRequest request) {
+        return InMemoryDynamoDb.respond(latencyMicros, () -> {
+            Map<String, String> attributes = new HashMap<>();
+            for (AttributeType attribute : request.userAttributes()) {
+                attributes.put(attribute.name(), attribute.value());
+            }
+            User user = new User(UUID.randomUUID().toString(), attributes, request.temporaryPassword());
+            if (users.putIfAbsent(request.username(), user) != null) {
+                throw UsernameExistsException.builder().message("An account with the given email already exists.").build();
+            }
+            return AdminCreateUserResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<AdminSetUserPasswordResponse> adminSetUserPassword(AdminSetUserPasswordRequest request) {
+        return InMemoryDynamoDb.respond(latencyMicros, () -> {
+            user(request.username()).password = request.password();
+            return AdminSetUserPasswordResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<AdminInitiateAuthResponse> adminInitiateAuth(AdminInitiateAuthRequest request) {
+        return InMemoryDynamoDb.respond(latencyMicros, () -> {
+            String username = request.authParameters().get("USERNAME");
+            User user = users.get(username);
+            if (user == null || !user.password.equals(request.authParameters().get("PASSWORD"))) {
+                throw NotAuthorizedException.builder().message("Incorrect username or password.").build();
+            }
+            if (!clientId.equals(request.clientId())) {
+                throw NotAuthorizedException.builder().message("Invalid client id.").build();
+            }
+            return AdminInitiateAuthResponse.builder()
+                    .authenticationResult(AuthenticationResultType.builder()
+                            .idToken(idToken(username, user))
+                            .expiresIn((int) TOKEN_TTL_SECONDS)
+                            .build())
+                    .build();
+        });
+    }
+
+    // Groups go into the cognito:groups claim of the id tokens issued afterwards
+    @Override
+    public CompletableFuture<AdminAddUserToGroupResponse> adminAddUserToGroup(AdminAddUserToGroupRequest request) {
+        return InMemoryDynamoDb.respond(latencyMicros, () -> {
+            User user = user(request.username());
+            if (!user.groups.contains(request.groupName())) {
+                user.groups.add(request.groupName());
+            }
+            return AdminAddUserToGroupResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<DescribeUserPoolResponse> describeUserPool(DescribeUserPoolRequest request) {
+        return InMemoryDynamoDb.respond(latencyMicros, () -> DescribeUserPoolResponse.builder().build());
+    }
+
+    private User user(String username) {
+        User user = users.get(username);
+        if (user == null) {
+            throw UserNotFoundException.builder().message("User does not exist.").build();
+        }
+        return user;
+    }
+
+    private String idToken(String username, User user) {
+        long now = System.currentTimeMillis() / 1000;
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", user.subject);
+        claims.put("email", user.attributes.get("email"));
+        claims.put("cognito:username", username);
+        if (!user.groups.isEmpty()) {
+            claims.put("cognito:groups", List.copyOf(user.groups));
+        }
+        claims.put("iss", issuer);
+        claims.put("aud", clientId);
+        claims.put("token_use", "id");
+        claims.put("auth_time", now);
+        claims.put("iat", now);
+        claims.put("exp", now + TOKEN_TTL_SECONDS);
+
+        try {
+            String signingInput = BASE64_URL.encodeToString(objectMapper.writeValueAsBytes(
+                    Map.of("alg", "RS256", "kid", keyId, "typ", "JWT")))
+                    + "." + BASE64_URL.encodeToString(objectMapper.writeValueAsBytes(claims));
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(keyPair.getPrivate());
+            signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + BASE64_URL.encodeToString(signature.sign());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign the id token", e);
+        }
+    }
+
+    // JWK integers are unsigned big-endian, without BigInteger's sign byte
+    private static byte[] unsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        return bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+
+    private static final class User {
+        final String subject;
+        final Map<String, String> attributes;
+        final List<String> groups = new CopyOnWriteArrayList<>();
+        volatile String password;
+
+        User(String subject, Map<String, String> attributes, String password) {
+            this.subject = subject;
+            this.attributes = attributes;
+            this.password = password;
+        }
+    }
+}
@@ -0,0 +1,1140 @@
+package com.task11;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+import software.amazon.awssdk.services.dynamodb.paginators.QueryPublisher;
+import software.amazon.awssdk.services.dynamodb.paginators.ScanPublisher;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// In-process stand-in for DynamoDB behind the SDK v2 async interface, for local runs of the booking API
+// (see LoadDriver). It covers what the services use: conditional put/update/delete, transactions,
+// batches, scans, and queries on hash(+range) indexes with Limit/ExclusiveStartKey paging, plus the
+// expression subset those calls are written in. Indexes are maintained on every write, so a query
+// reads one partition while a scan walks the whole table, the same cost shape as in DynamoDB.
+// Writes to one item are serialized by a striped lock; reads take no locks and, as with a GSI,
+// may briefly see an index entry a concurrent write is about to replace.
+class InMemoryDynamoDb implements DynamoDbAsyncClient {
+    private static final int LOCK_STRIPES = 256;
+    private static final int MAX_BATCH_GET_KEYS = 100;
+    private static final int MAX_BATCH_WRITE_ITEMS = 25;
+    private static final int MAX_TRANSACTION_ITEMS = 100;
+
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+    private final Map<String, Condition> conditions = new ConcurrentHashMap<>();
+    private final Map<String, List<UpdateAction>> updates = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> projections = new ConcurrentHashMap<>();
+    private final long latencyMicros;
+
+    // latencyMicros > 0 completes every call that much later on another thread, like a network round trip
+    InMemoryDynamoDb(long latencyMicros) {
+        this.latencyMicros = latencyMicros;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    InMemoryDynamoDb createTable(String tableName, String hashKey) {
+        tables.put(tableName, new Table(tableName, hashKey));
+        return this;
+    }
+
+    // Range keys are ordered as strings; every index in this project has S keys
+    InMemoryDynamoDb createIndex(String tableName, String indexName, String hashKey, String rangeKey) {
+        table(tableName).indexes.put(indexName, new Index(hashKey, rangeKey));
+        return this;
+    }
+
+    int itemCount(String tableName) {
+        return table(tableName).items.size();
+    }
+
+    @Override
+    public String serviceName() {
+        return "dynamodb";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+        return respond(latencyMicros, () -> {
+            Table table = table(request.tableName());
+            Map<String, AttributeValue> item = table.items.get(table.keyOf(request.key()));
+            GetItemResponse.Builder response = GetItemResponse.builder();
+            if (item != null) {
+                response.item(project(item, request.projectionExpression(), request.expressionAttributeNames()));
+            }
+            return response.build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<PutItemResponse> putItem(PutItemRequest request) {
+        return respond(latencyMicros, () -> {
+            Table table = table(request.tableName());
+            Map<String, AttributeValue> item = Map.copyOf(request.item());
+            String key = table.keyOf(item);
+            ReentrantLock lock = stripe(table, key);
+            lock.lock();
+            try {
+                Map<String, AttributeValue> old = table.items.get(key);
+                checkCondition(request.conditionExpression(), old,
+                        request.expressionAttributeNames(), request.expressionAttributeValues(),
+                        request.returnValuesOnConditionCheckFailure() == ReturnValuesOnConditionCheckFailure.ALL_OLD);
+                table.store(key, old, item);
+                PutItemResponse.Builder response = PutItemResponse.builder();
+                if (request.returnValues() == ReturnValue.ALL_OLD && old != null) {
+                    response.attributes(old);
+                }
+                return response.build();
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest request) {
+        return respond(latencyMicros, () -> {
+            Table table = table(request.tableName());
+            String key = table.keyOf(request.key());
+            ReentrantLock lock = stripe(table, key);
+            lock.lock();
+            try {
+                Map<String, AttributeValue> old = table.items.get(key);
+                checkCondition(request.conditionExpression(), old,
+                        request.expressionAttributeNames(), request.expressionAttributeValues());
+                Map<String, AttributeValue> updated = applyUpdate(request.updateExpression(), request.key(), old,
+                        request.expressionAttributeNames(), request.expressionAttributeValues());
+                table.store(key, old, updated);
+                UpdateItemResponse.Builder response = UpdateItemResponse.builder();
+                if (request.returnValues() == ReturnValue.ALL_NEW || request.returnValues() == ReturnValue.UPDATED_NEW) {
+                    response.attributes(updated);
+                } else if ((request.returnValues() == ReturnValue.ALL_OLD || request.returnValues() == ReturnValue.UPDATED_OLD)
+                        && old != null) {
+                    response.attributes(old);
+                }
+                return response.build();
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<DeleteItemResponse> deleteItem(DeleteItemRequest request) {
+        return respond(latencyMicros, () -> {
+            Table table = table(request.tableName());
+            String key = table.keyOf(request.key());
+            ReentrantLock lock = stripe(table, key);
+            lock.lock();
+            try {
+                Map<String, AttributeValue> old = table.items.get(key);
+                checkCondition(request.conditionExpression(), old,
+                        request.expressionAttributeNames(), request.expressionAttributeValues());
+                if (old != null) {
+                    table.store(key, old, null);
+                }
+                return DeleteItemResponse.builder().build();
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    // All conditions are checked with every touched item locked; nothing is written unless all pass
+    @Override
+    public CompletableFuture<TransactWriteItemsResponse> transactWriteItems(TransactWriteItemsRequest request) {
+        return respond(latencyMicros, () -> {
+            List<TransactWriteItem> items = request.transactItems();
+            if (items.size() > MAX_TRANSACTION_ITEMS) {
+                throw invalid("Member must have length less than or equal to " + MAX_TRANSACTION_ITEMS);
+            }
+            List<Write> writes = new ArrayList<>(items.size());
+            Set<String> touched = new LinkedHashSet<>();
+            TreeSet<Integer> lockOrder = new TreeSet<>();
+            for (TransactWriteItem item : items) {
+                Write write = Write.of(this, item);
+                if (!touched.add(write.table.name + "|" + write.key)) {
+                    throw invalid("Transaction request cannot include multiple operations on one item");
+                }
+                writes.add(write);
+                lockOrder.add(stripeIndex(write.table, write.key));
+            }
+
+            // Фіксований порядок захоплення смуг, тож дві транзакції не блокують одна одну
+            List<ReentrantLock> held = new ArrayList<>(lockOrder.size());
+            try {
+                for (int index : lockOrder) {
+                    stripes[index].lock();
+                    held.add(stripes[index]);
+                }
+                List<CancellationReason> reasons = new ArrayList<>(writes.size());
+                boolean cancelled = false;
+                for (Write write : writes) {
+                    Map<String, AttributeValue> old = write.table.items.get(write.key);
+                    if (write.conditionExpression == null
+                            || condition(write.conditionExpression).test(old, write.names, write.values)) {
+                        reasons.add(CancellationReason.builder().code("None").build());
+                    } else {
+                        reasons.add(CancellationReason.builder()
+                                .code("ConditionalCheckFailed").message("The conditional request failed").build());
+                        cancelled = true;
+                    }
+                }
+                if (cancelled) {
+                    StringBuilder codes = new StringBuilder();
+                    for (CancellationReason reason : reasons) {
+                        codes.append(codes.length() == 0 ? "" : ", ").append(reason.code());
+                    }
+                    throw TransactionCanceledException.builder()
+                            .message("Transaction cancelled, please refer cancellation reasons for specific reasons [" + codes + "]")
+                            .cancellationReasons(reasons)
+                            .build();
+                }
+                for (Write write : writes) {
+                    Map<String, AttributeValue> old = write.table.items.get(write.key);
+                    write.table.store(write.key, old, write.apply(this, old));
+                }
+                return TransactWriteItemsResponse.builder().build();
+            } finally {
+                for (ReentrantLock lock : held) {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<BatchGetItemResponse> batchGetItem(BatchGetItemRequest request) {
+        return respond(latencyMicros, () -> {
+            int keys = 0;
+            for (KeysAndAttributes tableKeys : request.requestItems().values()) {
+                keys += tableKeys.keys().size();
+            }
+            if (keys > MAX_BATCH_GET_KEYS) {
+                throw invalid("Too many items requested for the BatchGetItem call");
+            }
+            Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+            for (Map.Entry<String, KeysAndAttributes> entry : request.requestItems().entrySet()) {
+                Table table = table(entry.getKey());
+                KeysAndAttributes tableKeys = entry.getValue();
+                List<Map<String, AttributeValue>> found = new ArrayList<>();
+                for (Map<String, AttributeValue> key : tableKeys.keys()) {
+                    Map<String, AttributeValue> item = table.items.get(table.keyOf(key));
+                    if (item != null) {
+                        found.add(project(item, tableKeys.projectionExpression(), tableKeys.expressionAttributeNames()));
+                    }
+                }
+                responses.put(entry.getKey(), found);
+            }
+            return BatchGetItemResponse.builder().responses(responses).unprocessedKeys(Map.of()).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<BatchWriteItemResponse> batchWriteItem(BatchWriteItemRequest request) {
+        return respond(latencyMicros, () -> {
+            int count = 0;
+            for (List<WriteRequest> tableWrites : request.requestItems().values()) {
+                count += tableWrites.size();
+            }
+            if (count > MAX_BATCH_WRITE_ITEMS) {
+                throw invalid("Too many items requested for the BatchWriteItem call");
+            }
+            for (Map.Entry<String, List<WriteRequest>> entry : request.requestItems().entrySet()) {
+                Table table = table(entry.getKey());
+                for (WriteRequest write : entry.getValue()) {
+                    Map<String, AttributeValue> item = write.putRequest() != null ? Map.copyOf(write.putRequest().item()) : null;
+                    String key = table.keyOf(item != null ? item : write.deleteRequest().key());
+                    ReentrantLock lock = stripe(table, key);
+                    lock.lock();
+                    try {
+                        Map<String, AttributeValue> old = table.items.get(key);
+                        if (item != null || old != null) {
+                            table.store(key, old, item);
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+            return BatchWriteItemResponse.builder().unprocessedItems(Map.of()).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<ScanResponse> scan(ScanRequest request) {
+        return respond(latencyMicros, () -> {
+            if (request.indexName() != null) {
+                throw invalid("Scans of an index are not supported by the in-memory table");
+            }
+            Table table = table(request.tableName());
+            NavigableMap<String, Map<String, AttributeValue>> items = table.items;
+            if (request.exclusiveStartKey() != null && !request.exclusiveStartKey().isEmpty()) {
+                items = items.tailMap(table.keyOf(request.exclusiveStartKey()), false);
+            }
+            Condition filter = request.filterExpression() != null ? condition(request.filterExpression()) : null;
+            int limit = request.limit() != null ? request.limit() : Integer.MAX_VALUE;
+            Integer segment = request.segment();
+            Integer totalSegments = request.totalSegments();
+
+            List<Map<String, AttributeValue>> page = new ArrayList<>();
+            int evaluated = 0;
+            Map<String, AttributeValue> last = null;
+            boolean more = false;
+            for (Map.Entry<String, Map<String, AttributeValue>> entry : items.entrySet()) {
+                if (segment != null && Math.floorMod(entry.getKey().hashCode(), totalSegments) != segment) {
+                    continue;
+                }
+                if (evaluated == limit) {
+                    more = true;
+                    break;
+                }
+                evaluated++;
+                Map<String, AttributeValue> item = entry.getValue();
+                last = item;
+                if (filter == null || filter.test(item, request.expressionAttributeNames(), request.expressionAttributeValues())) {
+                    page.add(project(item, request.projectionExpression(), request.expressionAttributeNames()));
+                }
+            }
+
+            ScanResponse.Builder response = ScanResponse.builder().items(page).count(page.size());
+            if (more) {
+                response.lastEvaluatedKey(Map.of(table.hashKey, last.get(table.hashKey)));
+            }
+            return response.build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<QueryResponse> query(QueryRequest request) {
+        return respond(latencyMicros, () -> {
+            Table table = table(request.tableName());
+            Map<String, String> names = request.expressionAttributeNames();
+            Map<String, AttributeValue> values = request.expressionAttributeValues();
+            Condition keyCondition = condition(request.keyConditionExpression());
+            Condition filter = request.filterExpression() != null ? condition(request.filterExpression()) : null;
+            int limit = request.limit() != null ? request.limit() : Integer.MAX_VALUE;
+
+            Index index = null;
+            NavigableMap<String, Map<String, AttributeValue>> partition;
+            if (request.indexName() == null) {
+                AttributeValue hash = partitionValue(keyCondition, table.hashKey, names, values);
+                String key = scalar(hash);
+                Map<String, AttributeValue> item = table.items.get(key);
+                partition = new ConcurrentSkipListMap<>();
+                if (item != null) {
+                    partition.put(key, item);
+                }
+            } else {
+                index = table.indexes.get(request.indexName());
+                if (index == null) {
+                    throw invalid("The table does not have the specified index: " + request.indexName());
+                }
+                AttributeValue hash = partitionValue(keyCondition, index.hashKey, names, values);
+                partition = index.partitions.getOrDefault(scalar(hash), new ConcurrentSkipListMap<>());
+            }
+            if (Boolean.FALSE.equals(request.scanIndexForward())) {
+                partition = partition.descendingMap();
+            }
+            Map<String, AttributeValue> startKey = request.exclusiveStartKey();
+            if (startKey != null && !startKey.isEmpty()) {
+                String position = index != null ? index.position(table.keyOf(startKey), startKey) : table.keyOf(startKey);
+                partition = partition.tailMap(position, false);
+            }
+
+            List<Map<String, AttributeValue>> page = new ArrayList<>();
+            int evaluated = 0;
+            Map<String, AttributeValue> last = null;
+            boolean more = false;
+            for (Map<String, AttributeValue> item : partition.values()) {
+                if (!keyCondition.test(item, names, values)) {
+                    continue;
+                }
+                if (evaluated == limit) {
+                    more = true;
+                    break;
+                }
+                evaluated++;
+                last = item;
+                if (filter == null || filter.test(item, names, values)) {
+                    page.add(project(item, request.projectionExpression(), names));
+                }
+            }
+
+            QueryResponse.Builder response = QueryResponse.builder().items(page).count(page.size());
+            if (more) {
+                Map<String, AttributeValue> lastEvaluatedKey = new HashMap<>();
+                lastEvaluatedKey.put(table.hashKey, last.get(table.hashKey));
+                if (index != null) {
+                    lastEvaluatedKey.put(index.hashKey, last.get(index.hashKey));
+                    if (index.rangeKey != null) {
+                        lastEvaluatedKey.put(index.rangeKey, last.get(index.rangeKey));
+                    }
+                }
+                response.lastEvaluatedKey(lastEvaluatedKey);
+            }
+            return response.build();
+        });
+    }
+
+    @Override
+    public ScanPublisher scanPaginator(ScanRequest request) {
+        return new ScanPublisher(this, request);
+    }
+
+    @Override
+    public QueryPublisher queryPaginator(QueryRequest request) {
+        return new QueryPublisher(this, request);
+    }
+
+    // Shared by the in-memory stand-ins: completes right away, or after the simulated round trip
+    static <T> CompletableFuture<T> respond(long latencyMicros, Supplier<T> operation) {
+        if (latencyMicros <= 0) {
+            try {
+                return CompletableFuture.completedFuture(operation.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        Executor delayed = CompletableFuture.delayedExecutor(latencyMicros, TimeUnit.MICROSECONDS);
+        return CompletableFuture.supplyAsync(operation, delayed);
+    }
+
+    private Table table(String tableName) {
+        Table table = tables.get(tableName);
+        if (table == null) {
+            throw ResourceNotFoundException.builder().message("Requested resource not found: Table: " + tableName + " not found").build();
+        }
+        return table;
+    }
+
+    private int stripeIndex(Table table, String key) {
+        return Math.floorMod(31 * table.name.hashCode() + key.hashCode(), LOCK_STRIPES);
+    }
+
+    private ReentrantLock stripe(Table table, String key) {
+        return stripes[stripeIndex(table, key)];
+    }
+
+    private void checkCondition(String expression, Map<String, AttributeValue> item,
+                                Map<String, String> names, Map<String, AttributeValue> values) {
+        checkCondition(expression, item, names, values, false);
+    }
+
+    // With returnOld, the failure carries the current item, as ReturnValuesOnConditionCheckFailure.ALL_OLD does
+    private void checkCondition(String expression, Map<String, AttributeValue> item,
+                                Map<String, String> names, Map<String, AttributeValue> values, boolean returnOld) {
+        if (expression != null && !condition(expression).test(item, names, values)) {
+            ConditionalCheckFailedException.Builder error = ConditionalCheckFailedException.builder()
+                    .message("The conditional request failed");
+            if (returnOld && item != null) {
+                error.item(item);
+            }
+            throw error.build();
+        }
+    }
+
+    private Condition condition(String expression) {
+        return conditions.computeIfAbsent(expression, source -> new Parser(source).condition());
+    }
+
+    private Map<String, AttributeValue> applyUpdate(String expression, Map<String, AttributeValue> key,
+                                                    Map<String, AttributeValue> old,
+                                                    Map<String, String> names, Map<String, AttributeValue> values) {
+        Map<String, AttributeValue> updated = new HashMap<>(old != null ? old : key);
+        Map<String, AttributeValue> before = old != null ? old : Map.of();
+        for (UpdateAction action : updates.computeIfAbsent(expression, source -> new Parser(source).update())) {
+            action.apply(updated, before, names, values);
+        }
+        return Map.copyOf(updated);
+    }
+
+    private Map<String, AttributeValue> project(Map<String, AttributeValue> item, String expression, Map<String, String> names) {
+        if (expression == null) {
+            return item;
+        }
+        Map<String, AttributeValue> projected = new HashMap<>();
+        for (String path : projections.computeIfAbsent(expression, Parser::projection)) {
+            String name = resolveName(path, names);
+            AttributeValue value = item.get(name);
+            if (value != null) {
+                projected.put(name, value);
+            }
+        }
+        return projected;
+    }
+
+    // The value the key condition pins the partition key to
+    private static AttributeValue partitionValue(Condition keyCondition, String hashKey,
+                                                 Map<String, String> names, Map<String, AttributeValue> values) {
+        for (Condition part : keyCondition.conjuncts()) {
+            if (part instanceof Comparison) {
+                Comparison comparison = (Comparison) part;
+                if (comparison.operator.equals("=") && comparison.left instanceof Path
+                        && resolveName(((Path) comparison.left).name, names).equals(hashKey)) {
+                    return comparison.right.resolve(Map.of(), names, values);
+                }
+            }
+        }
+        throw invalid("Query condition missed key schema element: " + hashKey);
+    }
+
+    private static String resolveName(String token, Map<String, String> names) {
+        if (!token.startsWith("#")) {
+            return token;
+        }
+        String name = names != null ? names.get(token) : null;
+        if (name == null) {
+            throw invalid("An expression attribute name used in the document path is not defined; attribute name: " + token);
+        }
+        return name;
+    }
+
+    private static AttributeValue resolveValue(String token, Map<String, AttributeValue> values) {
+        AttributeValue value = values != null ? values.get(token) : null;
+        if (value == null) {
+            throw invalid("An expression attribute value used in expression is not defined; attribute value: " + token);
+        }
+        return value;
+    }
+
+    // Key attributes are S or N, so their string form is enough to order and find items
+    private static String scalar(AttributeValue value) {
+        if (value == null) {
+            throw invalid("One of the required keys was not given a value");
+        }
+        if (value.s() != null) {
+            return value.s();
+        }
+        if (value.n() != null) {
+            return value.n();
+        }
+        return Base64.getEncoder().encodeToString(value.b().asByteArray());
+    }
+
+    private static DynamoDbException invalid(String message) {
+        return (DynamoDbException) DynamoDbException.builder().message(message).build();
+    }
+
+    private static boolean equal(AttributeValue a, AttributeValue b) {
+        if (a == null || b == null || a.type() != b.type()) {
+            return false;
+        }
+        if (a.type() == AttributeValue.Type.N) {
+            return new BigDecimal(a.n()).compareTo(new BigDecimal(b.n())) == 0;
+        }
+        return a.equals(b);
+    }
+
+    // null when the two values cannot be ordered (missing, different or unordered types)
+    private static Integer order(AttributeValue a, AttributeValue b) {
+        if (a == null || b == null || a.type() != b.type()) {
+            return null;
+        }
+        switch (a.type()) {
+            case S:
+                return a.s().compareTo(b.s());
+            case N:
+                return new BigDecimal(a.n()).compareTo(new BigDecimal(b.n()));
+            case B:
+                return Arrays.compareUnsigned(a.b().asByteArray(), b.b().asByteArray());
+            default:
+                return null;
+        }
+    }
+
+    private static final class Table {
+        final String name;
+        final String hashKey;
+        final ConcurrentSkipListMap<String, Map<String, AttributeValue>> items = new ConcurrentSkipListMap<>();
+        final Map<String, Index> indexes = new ConcurrentHashMap<>();
+
+        Table(String name, String hashKey) {
+            this.name = name;
+            this.hashKey = hashKey;
+        }
+
+        String keyOf(Map<String, AttributeValue> item) {
+            return scalar(item.get(hashKey));
+        }
+
+        // Caller holds the item's stripe; updated == null deletes
+        void store(String key, Map<String, AttributeValue> old, Map<String, AttributeValue> updated) {
+            for (Index index : indexes.values()) {
+                if (old != null) {
+                    index.remove(key, old);
+                }
+                if (updated != null) {
+                    index.add(key, updated);
+                }
+            }
+            if (updated != null) {
+                items.put(key, updated);
+            } else {
+                items.remove(key);
+            }
+        }
+    }
+
+    // Sparse like a GSI: only items that carry every index key attribute are in it
+    private static final class Index {
+        final String hashKey;
+        final String rangeKey;
+        final Map<String, ConcurrentSkipListMap<String, Map<String, AttributeValue>>> partitions = new ConcurrentHashMap<>();
+
+        Index(String hashKey, String rangeKey) {
+            this.hashKey = hashKey;
+            this.rangeKey = rangeKey;
+        }
+
+        boolean covers(Map<String, AttributeValue> item) {
+            return item.containsKey(hashKey) && (rangeKey == null || item.containsKey(rangeKey));
+        }
+
+        // Range value first, then the table key, so items with equal range values keep a stable order
+        String position(String key, Map<String, AttributeValue> item) {
+            return (rangeKey != null ? scalar(item.get(rangeKey)) : "") + '\u0000' + key;
+        }
+
+        void add(String key, Map<String, AttributeValue> item) {
+            if (covers(item)) {
+                partitions.computeIfAbsent(scalar(item.get(hashKey)), hash -> new ConcurrentSkipListMap<>())
+                        .put(position(key, item), item);
+            }
+        }
+
+        void remove(String key, Map<String, AttributeValue> item) {
+            if (covers(item)) {
+                Map<String, Map<String, AttributeValue>> partition = partitions.get(scalar(item.get(hashKey)));
+                if (partition != null) {
+                    partition.remove(position(key, item));
+                }
+            }
+        }
+    }
+
+    // One element of a TransactWriteItems call
+    private static final class Write {
+        final Table table;
+        final String key;
+        final String conditionExpression;
+        final Map<String, String> names;
+        final Map<String, AttributeValue> values;
+        final Map<String, AttributeValue> item;
+        final Map<String, AttributeValue> updateKey;
+        final String updateExpression;
+        final boolean delete;
+
+        private Write(Table table, String key, String conditionExpression, Map<String, String> names,
+                      Map<String, AttributeValue> values, Map<String, AttributeValue> item,
+                      Map<String, AttributeValue> updateKey, String updateExpression, boolean delete) {
+            this.table = table;
+            this.key = key;
+            this.conditionExpression = conditionExpression;
+            this.names = names;
+            this.values = values;
+            this.item = item;
+            this.updateKey = updateKey;
+            this.updateExpression = updateExpression;
+            this.delete = delete;
+        }
+
+        static Write of(InMemoryDynamoDb db, TransactWriteItem write) {
+            if (write.put() != null) {
+                Table table = db.table(write.put().tableName());
+                Map<String, AttributeValue> item = Map.copyOf(write.put().item());
+                return new Write(table, table.keyOf(item), write.put().conditionExpression(),
+                        write.put().expressionAttributeNames(), write.put().expressionAttributeValues(), item, null, null, false);
+            }
+            if (write.update() != null) {
+                Table table = db.table(write.update().tableName());
+                return new Write(table, table.keyOf(write.update().key()), write.update().conditionExpression(),
+                        write.update().expressionAttributeNames(), write.update().expressionAttributeValues(),
+                        null, write.update().key(), write.update().updateExpression(), false);
+            }
+            if (write.delete() != null) {
+                Table table = db.table(write.delete().tableName());
+                return new Write(table, table.keyOf(write.delete().key()), write.delete().conditionExpression(),
+                        write.delete().expressionAttributeNames(), write.delete().expressionAttributeValues(),
+                        null, null, null, true);
+            }
+            Table table = db.table(write.conditionCheck().tableName());
+            return new Write(table, table.keyOf(write.conditionCheck().key()), write.conditionCheck().conditionExpression(),
+                    write.conditionCheck().expressionAttributeNames(), write.conditionCheck().expressionAttributeValues(),
+                    null, null, null, false);
+        }
+
+        // The item after this write; a condition check leaves it as it was
+        Map<String, AttributeValue> apply(InMemoryDynamoDb db, Map<String, AttributeValue> old) {
+            if (item != null) {
+                return item;
+            }
+            if (updateExpression != null) {
+                return db.applyUpdate(updateExpression, updateKey, old, names, values);
+            }
+            return delete ? null : old;
+        }
+    }
+
+    // --- Expressions ---------------------------------------------------------------------------
+
+    private interface Operand {
+        AttributeValue resolve(Map<String, AttributeValue> item, Map<String, String> names, Map<String, AttributeValue> values);
+    }
+
+    private interface Condition {
+        // item is null when the key does not exist yet
+        boolean test(Map<String, AttributeValue> item, Map<String, String> names, Map<String, AttributeValue> values);
+
+        default List<Condition> conjuncts() {
+            return List.of(this);
+        }
+    }
+
+    private interface UpdateAction {
+        // Operands read the item as it was before the update, as in DynamoDB
+        void apply(Map<String, AttributeValue> updated, Map<String, AttributeValue> before,
+                   Map<String, String> names, Map<String, AttributeValue> values);
+    }
+
+    private static final class Path implements Operand {
+        final String name;
+
+        Path(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public AttributeValue resolve(Map<String, AttributeValue> item, Map<String, String> names, Map<String, AttributeValue> values) {
+            return item != null ? item.get(resolveName(name, names)) : null;
+        }
+    }
+
+    private static final class Comparison implements Condition {
+        final Operand left;
+        final String operator;
+        final Operand right;
+
+        Comparison(Operand left, String operator, Operand right) {
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Map<String, AttributeValue> item, Map<String, String> names, Map<String, AttributeValue> values) {
+            AttributeValue a = left.resolve(item, names, values);
+            AttributeValue b = right.resolve(item, names, values);
+            if (operator.equals("=")) {
+                return equal(a, b);
+            }
+            if (operator.equals("<>")) {
+                return !equal(a, b);
+            }
+            Integer order = order(a, b);
+            if (order == null) {
+                return false;
+            }
+            switch (operator) {
+                case "<":
+                    return order < 0;
+                case "<=":
+                    return order <= 0;
+                case ">":
+                    return order > 0;
+                default:
+                    return order >= 0;
+            }
+        }
+    }
+
+    private static final class And implements Condition {
+        final Condition left;
+        final Condition right;
+
+        And(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Map<String, AttributeValue> item, Map<String, String> names, Map<String, AttributeValue> values) {
+            return left.test(item, names, values) && right.test(item, names, values);
+        }
+
+        @Override
+        public List<Condition> conjuncts() {
+            List<Condition> parts = new ArrayList<>(left.conjuncts());
+            parts.addAll(right.conjuncts());
+            return parts;
+        }
+    }
+
+    // Recursive-descent parser for the condition, update and projection expression subset in use:
+    // comparisons, BETWEEN, IN, AND/OR/NOT, attribute_exists, attribute_not_exists, begins_with, contains;
+    // SET (with +, - and if_not_exists), ADD, REMOVE and DELETE. Keywords are case-insensitive.
+    private static final class Parser {
+        private final List<String> tokens;
+        private int position;
+
+        Parser(String expression) {
+            this.tokens = tokenize(expression);
+        }
+
+        static List<String> projection(String expression) {
+            List<String> paths = new ArrayList<>();
+            for (String path : expression.split(",")) {
+                paths.add(path.trim());
+            }
+            return paths;
+        }
+
+        Condition condition() {
+            Condition condition = or();
+            if (position < tokens.size()) {
+                throw invalid("Invalid ConditionExpression: unexpected token " + tokens.get(position));
+            }
+            return condition;
+        }
+
+        List<UpdateAction> update() {
+            List<UpdateAction> actions = new ArrayList<>();
+            while (position < tokens.size()) {
+                String clause = next().toUpperCase();
+                do {
+                    actions.add(updateAction(clause));
+                } while (accept(","));
+            }
+            return actions;
+        }
+
+        private UpdateAction updateAction(String clause) {
+            String target = next();
+            switch (clause) {
+                case "SET": {
+                    expect("=");
+                    Operand value = sum();
+                    return (updated, before, names, values) -> {
+                        AttributeValue resolved = value.resolve(before, names, values);
+                        if (resolved == null) {
+                            throw invalid("The provided expression refers to an attribute that does not exist in the item");
+                        }
+                        updated.put(resolveName(target, names), resolved);
+                    };
+                }
+                case "ADD": {
+                    Operand value = operand();
+                    return (updated, before, names, values) -> {
+                        String name = resolveName(target, names);
+                        AttributeValue delta = value.resolve(before, names, values);
+                        AttributeValue current = before.get(name);
+                        if (delta.n() != null) {
+                            BigDecimal base = current != null ? new BigDecimal(current.n()) : BigDecimal.ZERO;
+                            updated.put(name, AttributeValue.fromN(base.add(new BigDecimal(delta.n())).toPlainString()));
+                        } else {
+                            Set<String> members = new LinkedHashSet<>(current != null ? current.ss() : List.of());
+                            members.addAll(delta.ss());
+                            updated.put(name, AttributeValue.fromSs(new ArrayList<>(members)));
+                        }
+                    };
+                }
+                case "REMOVE":
+                    return (updated, before, names, values) -> updated.remove(resolveName(target, names));
+                case "DELETE": {
+                    Operand value = operand();
+                    return (updated, before, names, values) -> {
+                        String name = resolveName(target, names);
+                        AttributeValue current = before.get(name);
+                        if (current != null) {
+                            Set<String> members = new LinkedHashSet<>(current.ss());
+                            members.removeAll(value.resolve(before, names, values).ss());
+                            if (members.isEmpty()) {
+                                updated.remove(name);
+                            } else {
+                                updated.put(name, AttributeValue.fromSs(new ArrayList<>(members)));
+                            }
+                        }
+                    };
+                }
+                default:
+                    throw invalid("Invalid UpdateExpression: unknown clause " + clause);
+            }
+        }
+
+        // operand [ (+|-) operand ], numbers only
+        private Operand sum() {
+            Operand left = updateOperand();
+            if (peek("+") || peek("-")) {
+                boolean add = next().equals("+");
+                Operand right = updateOperand();
+                return (item, names, values) -> {
+                    BigDecimal a = new BigDecimal(left.resolve(item, names, values).n());
+                    BigDecimal b = new BigDecimal(right.resolve(item, names, values).n());
+                    return AttributeValue.fromN((add ? a.add(b) : a.subtract(b)).toPlainString());
+                };
+            }
+            return left;
+        }
+
+        private Operand updateOperand() {
+            if (peekFunction("if_not_exists")) {
+                next();
+                expect("(");
+                Operand path = operand();
+                expect(",");
+                Operand fallback = operand();
+                expect(")");
+                return (item, names, values) -> {
+                    AttributeValue existing = path.resolve(item, names, values);
+                    return existing != null ? existing : fallback.resolve(item, names, values);
+                };
+            }
+            return operand();
+        }
+
+        private Condition or() {
+            Condition left = and();
+            while (acceptKeyword("OR")) {
+                Condition a = left;
+                Condition b = and();
+                left = (item, names, values) -> a.test(item, names, values) || b.test(item, names, values);
+            }
+            return left;
+        }
+
+        private Condition and() {
+            Condition left = not();
+            while (acceptKeyword("AND")) {
+                left = new And(left, not());
+            }
+            return left;
+        }
+
+        private Condition not() {
+            if (acceptKeyword("NOT")) {
+                Condition negated = not();
+                return (item, names, values) -> !negated.test(item, names, values);
+            }
+            return primary();
+        }
+
+        private Condition primary() {
+            if (accept("(")) {
+                Condition inner = or();
+                expect(")");
+                return inner;
+            }
+            if (peekFunction("attribute_exists") || peekFunction("attribute_not_exists")) {
+                boolean exists = next().equalsIgnoreCase("attribute_exists");
+                expect("(");
+                Operand path = operand();
+                expect(")");
+                return (item, names, values) -> (path.resolve(item, names, values) != null) == exists;
+            }
+            if (peekFunction("begins_with")) {
+                next();
+                expect("(");
+                Operand path = operand();
+                expect(",");
+                Operand prefix = operand();
+                expect(")");
+                return (item, names, values) -> {
+                    AttributeValue value = path.resolve(item, names, values);
+                    AttributeValue start = prefix.resolve(item, names, values);
+                    return value != null && value.s() != null && start.s() != null && value.s().startsWith(start.s());
+                };
+            }
+            if (peekFunction("contains")) {
+                next();
+                expect("(");
+                Operand path = operand();
+                expect(",");
+                Operand member = operand();
+                expect(")");
+                return (item, names, values) -> {
+                    AttributeValue value = path.resolve(item, names, values);
+                    AttributeValue wanted = member.resolve(item, names, values);
+                    if (value == null || wanted == null) {
+                        return false;
+                    }
+                    if (value.s() != null) {
+                        return wanted.s() != null && value.s().contains(wanted.s());
+                    }
+                    if (value.hasSs()) {
+                        return value.ss().contains(wanted.s());
+                    }
+                    if (value.hasL()) {
+                        for (AttributeValue element : value.l()) {
+                            if (equal(element, wanted)) {
+                                return true;
+                            }
+                        }
+                    }
+                    return false;
+                };
+            }
+
+            Operand left = operand();
+            if (acceptKeyword("BETWEEN")) {
+                Operand low = operand();
+                if (!acceptKeyword("AND")) {
+                    throw invalid("Invalid ConditionExpression: BETWEEN needs AND");
+                }
+                Operand high = operand();
+                Condition atLeast = new Comparison(left, ">=", low);
+                Condition atMost = new Comparison(left, "<=", high);
+                return (item, names, values) -> atLeast.test(item, names, values) && atMost.test(item, names, values);
+            }
+            if (acceptKeyword("IN")) {
+                expect("(");
+                List<Operand> candidates = new ArrayList<>();
+                do {
+                    candidates.add(operand());
+                } while (accept(","));
+                expect(")");
+                return (item, names, values) -> {
+                    AttributeValue value = left.resolve(item, names, values);
+                    for (Operand candidate : candidates) {
+                        if (equal(value, candidate.resolve(item, names, values))) {
+                            return true;
+                        }
+                    }
+                    return false;
+                };
+            }
+            String operator = next();
+            if (!operator.equals("=") && !operator.equals("<>") && !operator.equals("<")
+                    && !operator.equals("<=") && !operator.equals(">") && !operator.equals(">=")) {
+                throw invalid("Invalid ConditionExpression: unexpected token " + operator);
+            }
+            return new Comparison(left, operator, operand());
+        }
+
+        private Operand operand() {
+            String token = next();
+            if (token.startsWith(":")) {
+                return (item, names, values) -> resolveValue(token, values);
+            }
+            return new Path(token);
+        }
+
+        private String next() {
+            if (position >= tokens.size()) {
+                throw invalid("Invalid expression: unexpected end of input");
+            }
+            return tokens.get(position++);
+        }
+
+        private boolean peek(String token) {
+            return position < tokens.size() && tokens.get(position).equals(token);
+        }
+
+        private boolean peekFunction(String name) {
+            return position + 1 < tokens.size() && tokens.get(position).equalsIgnoreCase(name)
+                    && tokens.get(position + 1).equals("(");
+        }
+
+        private boolean accept(String token) {
+            if (peek(token)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            if (position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw invalid("Invalid expression: expected " + token);
+            }
+        }
+
+        private static List<String> tokenize(String expression) {
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < expression.length()) {
+                char c = expression.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '<' || c == '>') {
+                    boolean pair = i + 1 < expression.length()
+                            && (expression.charAt(i + 1) == '=' || (c == '<' && expression.charAt(i + 1) == '>'));
+                    tokens.add(expression.substring(i, pair ? i + 2 : i + 1));
+                    i += pair ? 2 : 1;
+                } else if ("(),=+-".indexOf(c) >= 0) {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else {
+                    int start = i;
+                    while (i < expression.length() && (Character.isLetterOrDigit(expression.charAt(i))
+                            || "_#:.".indexOf(expression.charAt(i)) >= 0)) {
+                        i++;
+                    }
+                    if (start == i) {
+                        throw invalid("Invalid expression: unexpected character " + c);
+                    }
+                    tokens.add(expression.substring(start, i));
+                }
+            }
+            return tokens;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.task11;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process stand-in for SQS behind the SDK v2 async interface, for local runs of the queued reservation
+// intake (see LoadDriver). Sent messages wait in one FIFO buffer whatever the queue URL; drain() hands them
+// to a consumer in batches, as the Lambda event source mapping does, and a batch whose handler throws is
+// queued again, up to maxReceives deliveries (the queue's maxReceiveCount), after which its messages count as
+// dead letters. Each delivery carries its ApproximateReceiveCount, as SQS sets it.
+class InMemorySqs implements SqsAsyncClient {
+    private final BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+    private final AtomicLong deadLetters = new AtomicLong();
+    private final long latencyMicros;
+    private final int maxReceives;
+
+    InMemorySqs(long latencyMicros, int maxReceives) {
+        this.latencyMicros = latencyMicros;
+        this.maxReceives = maxReceives;
+    }
+
+    @Override
+    public String serviceName() {
+        return "sqs";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public CompletableFuture<GetQueueUrlResponse> getQueueUrl(GetQueueUrlRequest request) {
+        return InMemoryDynamoDb.respond(latencyMicros, () ->
+                GetQueueUrlResponse.builder().queueUrl("local://" + request.queueName()).build());
+    }
+
+    @Override
+    public CompletableFuture<SendMessageResponse> sendMessage(SendMessageRequest request) {
+        return InMemoryDynamoDb.respond(latencyMicros, () -> {
+            String messageId = UUID.randomUUID().toString();
+            messages.add(new Message(messageId, request.messageBody(), 0));
+            return SendMessageResponse.builder().messageId(messageId).build();
+        });
+    }
+
+    // Delivers what is queued, batchSize messages per call, until the buffer is empty.
+    // Returns the number of messages delivered, redeliveries included
+    int drain(RequestHandler<SQSEvent, ?> consumer, int batchSize, Context context) {
+        int delivered = 0;
+        List<Message> batch = new ArrayList<>(batchSize);
+        while (messages.drainTo(batch, batchSize) > 0) {
+            List<SQSEvent.SQSMessage> records = new ArrayList<>(batch.size());
+            for (Message message : batch) {
+                SQSEvent.SQSMessage record = new SQSEvent.SQSMessage();
+                record.setMessageId(message.id);
+                record.setBody(message.body);
+                record.setAttributes(Map.of("ApproximateReceiveCount", String.valueOf(message.receives + 1)));
+                records.add(record);
+            }
+            SQSEvent event = new SQSEvent();
+            event.setRecords(records);
+            try {
+                consumer.handleRequest(event, context);
+            } catch (RuntimeException e) {
+                // Як після тайм-ауту видимості: пакет повертається в чергу цілим
+                for (Message message : batch) {
+                    if (message.receives + 1 < maxReceives) {
+                        messages.add(new Message(message.id, message.body, message.receives + 1));
+                    } else {
+                        deadLetters.incrementAndGet();
+                    }
+                }
+            }
+            delivered += batch.size();
+            batch.clear();
+        }
+        return delivered;
+    }
+
+    int queued() {
+        return messages.size();
+    }
+
+    long deadLetters() {
+        return deadLetters.get();
+    }
+
+    private static final class Message {
+        final String id;
+        final String body;
+        final int receives;
+
+        Message(String id, String body, int receives) {
+            this.id = id;
+            this.body = body;
+            this.receives = receives;
+        }
+    }
+}
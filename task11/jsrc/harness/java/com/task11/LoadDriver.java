@@ -0,0 +1,600 @@
+package com.task11;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderAsyncClient;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminAddUserToGroupRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Local load test of {@link ApiHandler} against the in-memory DynamoDB and Cognito stand-ins
+ * ({@link InMemoryDynamoDb}, {@link InMemoryCognito}): worker threads replay API Gateway proxy events
+ * through {@code handleRequest} and the run ends with throughput and p50/p99/p99.9 latency per route,
+ * so a change that turns a key lookup into a scan shows up before deploy.
+ * <p>
+ * Events are generated for every route, or read from an NDJSON file of captured proxy events
+ * ({@code events=...}), where {@code {{token}}} is replaced with a valid id token. Samples taken during
+ * the warm-up are dropped. {@code latencyMicros} adds a simulated round trip to every AWS call.
+ * {@code venue} sends every request for that venue, whose Cognito group the user joins, and {@code shards} splits
+ * its venue-day keys.
+ * {@code asyncIntake=true} queues {@code POST /reservations} on {@link InMemorySqs}, drained in the background
+ * by {@link ReservationIntakeHandler}.
+ * <p>
+ * {@code perRequestInit=true} puts back what every invocation paid before clients were built once per container:
+ * new Cognito and DynamoDB SDK clients and a new route table per request. It needs {@code threads=1}, like a
+ * Lambda container, and gives the "before" side of a warm-latency comparison.
+ * <p>
+ * {@code once=true} sends the seeding requests and each scenario once from a fresh JVM instead, drains the intake
+ * queue once and prints the time from JVM start to the end of init, to the first response and to the end of the
+ * pass. {@code prime=true} runs the priming that {@code CheckpointHooks} runs before a SnapStart snapshot as part of
+ * init (see {@link StartupBenchmark}).
+ * <p>
+ * Usage: {@code LOG_LEVEL=WARN mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.task11.LoadDriver -Dexec.args="threads=8 seconds=30 warmup=10 tables=50 days=14 latencyMicros=0 [admissionRate=0] [venue=main] [shards=1] [asyncIntake=false] [perRequestInit=false] [events=captured.ndjson] [once=false] [prime=false]"}
+ */
+public class LoadDriver {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String EMAIL = "load.driver@example.com";
+    private static final String PASSWORD = "Load-Driver-Pass1";
+    private static final int FUNCTION_TIMEOUT_MILLIS = 29_000;
+    // One client: admission keys on the source address before routing and on the user after it
+    private static final String SOURCE_IP = "198.51.100.7";
+    private static final SdkEventLoopGroup EVENT_LOOPS = SdkEventLoopGroup.builder().numberOfThreads(1).build();
+
+    private final ApiHandler handler = new ApiHandler();
+    private Runnable beforeRequest = () -> {
+    };
+    private final int tables;
+    private final String venue;
+    private final InMemoryCognito cognito;
+    private final List<String> dates = new ArrayList<>();
+    private String token;
+    private long firstResponseNanos;
+
+    private LoadDriver(InMemoryCognito cognito, int tables, int days, String venue) {
+        this.cognito = cognito;
+        this.tables = tables;
+        this.venue = venue;
+        LocalDate first = LocalDate.now().plusDays(1);
+        for (int day = 0; day < days; day++) {
+            dates.add(first.plusDays(day).toString());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        long latencyMicros = Long.parseLong(options.getOrDefault("latencyMicros", "0"));
+
+        // Ті самі імена, що й змінні оточення Lambda; install() читає їх як system properties
+        System.setProperty("TABLES_TABLE", "tables");
+        System.setProperty("RESERVATIONS_TABLE", "reservations");
+        System.setProperty("COGNITO_ID", "local-pool");
+        System.setProperty("CLIENT_ID", "local-client");
+        // Усі потоки ходять з однієї адреси з одним токеном: ліміт на клієнта вимкнено, доки його не задано явно
+        System.setProperty("ADMISSION_RATE_PER_SECOND", options.getOrDefault("admissionRate", "0"));
+        String venue = options.getOrDefault("venue", "main");
+        System.setProperty("VENUE_SHARDS", venue + "=" + options.getOrDefault("shards", "1"));
+        boolean asyncIntake = Boolean.parseBoolean(options.getOrDefault("asyncIntake", "false"));
+        System.setProperty("ASYNC_RESERVATIONS", String.valueOf(asyncIntake));
+        System.setProperty("RESERVATION_QUEUE", "reservation_intake_queue");
+
+        InMemoryDynamoDb dynamoDb = bookingTables(latencyMicros);
+        InMemoryCognito cognito = new InMemoryCognito("local-pool", "local-client", latencyMicros);
+        InMemorySqs sqs = new InMemorySqs(latencyMicros, 8);
+        ApiHandler.install(cognito, dynamoDb, sqs, cognito.verifier());
+
+        LoadDriver driver = new LoadDriver(cognito,
+                Integer.parseInt(options.getOrDefault("tables", "50")),
+                Integer.parseInt(options.getOrDefault("days", "14")),
+                venue);
+        if (Boolean.parseBoolean(options.getOrDefault("prime", "false"))) {
+            ApiHandler.prime();
+        }
+        if (Boolean.parseBoolean(options.getOrDefault("once", "false"))) {
+            driver.runOnce(asyncIntake ? sqs : null, dynamoDb);
+            return;
+        }
+        driver.seed();
+        if (Boolean.parseBoolean(options.getOrDefault("perRequestInit", "false"))) {
+            if (threads != 1) {
+                throw new IllegalArgumentException("perRequestInit rebuilds the shared route table and needs threads=1");
+            }
+            JwtVerifier verifier = cognito.verifier();
+            driver.beforeRequest = () -> rebuildServices(cognito, dynamoDb, sqs, verifier);
+        }
+
+        List<Scenario> scenarios = options.containsKey("events")
+                ? driver.replay(options.get("events"))
+                : driver.scenarios();
+        Thread consumer = asyncIntake ? startIntake(sqs, new ReservationIntakeHandler(dynamoDb)) : null;
+        Map<String, Samples> results = driver.run(scenarios, threads, warmup, seconds);
+        if (consumer != null) {
+            consumer.interrupt();
+            consumer.join();
+        }
+
+        System.out.println("threads=" + threads + " seconds=" + seconds + " warmup=" + warmup
+                + " latencyMicros=" + latencyMicros + " tables=" + dynamoDb.itemCount("tables")
+                + " reservationItems=" + dynamoDb.itemCount("reservations")
+                + (asyncIntake ? " queued=" + sqs.queued() + " deadLetters=" + sqs.deadLetters() : ""));
+        report(results, seconds);
+    }
+
+    // The "tables" and "reservations" tables with the indexes of deployment_resources.json
+    static InMemoryDynamoDb bookingTables(long latencyMicros) {
+        return new InMemoryDynamoDb(latencyMicros)
+                .createTable("tables", "id")
+                .createIndex("tables", Venue.VENUE_INDEX, Venue.VENUE_KEY, null)
+                .createTable("reservations", "id")
+                .createIndex("reservations", ReservationService.TABLE_DATE_INDEX, ReservationService.TABLE_DATE_KEY, "slotTimeStart")
+                .createIndex("reservations", Venue.VENUE_DATE_INDEX, Venue.VENUE_DATE_KEY, "slotTimeStart")
+                .createIndex("reservations", Venue.VENUE_SHARD_INDEX, Venue.VENUE_SHARD_KEY, "date")
+                .createIndex("reservations", ReservationService.OCCUPANCY_DATE_INDEX, ReservationService.OCCUPANCY_DATE_KEY, null);
+    }
+
+    // What handleRequest did on every invocation before clients were built once per container: build the SDK
+    // clients and all route handlers; the routes keep using the stand-ins. The clients share one event loop
+    // group, so closing them does not wait for its shutdown: the old handler never closed them at all
+    private static void rebuildServices(InMemoryCognito cognito, InMemoryDynamoDb dynamoDb, InMemorySqs sqs, JwtVerifier verifier) {
+        try (CognitoIdentityProviderAsyncClient cognitoClient = CognitoIdentityProviderAsyncClient.builder()
+                .region(Region.of("eu-central-1"))
+                .credentialsProvider(ApiHandler.credentialsProvider())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder().eventLoopGroup(EVENT_LOOPS))
+                .build();
+             DynamoDbAsyncClient dynamoClient = DynamoDbAsyncClient.builder()
+                     .region(Region.of("eu-central-1"))
+                     .credentialsProvider(ApiHandler.credentialsProvider())
+                     .httpClientBuilder(NettyNioAsyncHttpClient.builder().eventLoopGroup(EVENT_LOOPS))
+                     .build()) {
+            ApiHandler.install(cognito, dynamoDb, sqs, verifier);
+        }
+    }
+
+    // One consumer, like an event source mapping with reserved concurrency 1, polling every 10 ms
+    private static Thread startIntake(InMemorySqs sqs, ReservationIntakeHandler intake) {
+        Thread consumer = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (sqs.drain(intake, 10, new LocalContext()) == 0) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "intake");
+        consumer.setDaemon(true);
+        consumer.start();
+        return consumer;
+    }
+
+    // Seeding, every route once on one thread, then the queued bookings through the intake handler
+    private void runOnce(InMemorySqs sqs, InMemoryDynamoDb dynamoDb) throws IOException {
+        // Усе до першого запиту: ініціалізація обробника, а з prime=true ще й прогрів перед знімком
+        long initMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        seed();
+        Map<String, Integer> statuses = new TreeMap<>();
+        for (Scenario scenario : scenarios()) {
+            statuses.put(scenario.route, statusCode(invoke(scenario.events.apply(ThreadLocalRandom.current()))));
+        }
+        int delivered = sqs != null ? sqs.drain(new ReservationIntakeHandler(dynamoDb), 10, new LocalContext()) : 0;
+
+        long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        long firstMillis = uptimeMillis - (System.nanoTime() - firstResponseNanos) / 1_000_000;
+        System.out.println("initMillis=" + initMillis + " firstResponseMillis=" + firstMillis + " totalMillis=" + uptimeMillis
+                + " delivered=" + delivered + " statuses=" + statuses);
+    }
+
+    // A user and the tables catalogue, created through the API like any client would
+    private void seed() throws IOException {
+        Map<String, Object> user = new HashMap<>();
+        user.put("email", EMAIL);
+        user.put("password", PASSWORD);
+        user.put("firstName", "Load");
+        user.put("lastName", "Driver");
+        expectOk(invoke(event("/signup", "POST", "/signup", null, null, user, false)));
+        // Інший заклад, ніж за замовчуванням, користувач бачить лише з групою цього закладу
+        if (!venue.equals(Venue.defaultVenue().id())) {
+            cognito.adminAddUserToGroup(AdminAddUserToGroupRequest.builder()
+                    .userPoolId("local-pool")
+                    .username(EMAIL)
+                    .groupName(Venue.GROUP_PREFIX + venue)
+                    .build()).join();
+        }
+
+        Map<String, Object> signin = objectMapper.readValue(
+                expectOk(invoke(event("/signin", "POST", "/signin", null, null, Map.of("email", EMAIL, "password", PASSWORD), false))),
+                Map.class);
+        token = (String) signin.get("idToken");
+
+        for (int id = 1; id <= tables; id++) {
+            Map<String, Object> table = new HashMap<>();
+            table.put("id", id);
+            table.put("number", id);
+            table.put("places", 2 + id % 7);
+            table.put("isVip", id % 5 == 0);
+            expectOk(invoke(event("/tables", "POST", "/tables", null, null, table, true)));
+        }
+    }
+
+    // Read-heavy mix of every route; bookings land on random tables and slots, so some of them overlap
+    private List<Scenario> scenarios() {
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(new Scenario("/tables:GET", 20, random ->
+                event("/tables", "GET", "/tables", null, null, null, true)));
+        scenarios.add(new Scenario("/tables/{tableId}:GET", 20, random -> {
+            String tableId = String.valueOf(1 + random.nextInt(tables));
+            return event("/tables/{tableId}", "GET", "/tables/" + tableId, Map.of("tableId", tableId), null, null, true);
+        }));
+        scenarios.add(new Scenario("/availability:GET", 20, random -> {
+            int start = slotStart(random);
+            Map<String, String> query = new HashMap<>();
+            query.put("date", date(random));
+            query.put("from", time(start));
+            query.put("to", time(start + 90));
+            query.put("places", String.valueOf(2 + random.nextInt(5)));
+            return event("/availability", "GET", "/availability", null, query, null, true);
+        }));
+        scenarios.add(new Scenario("/reservations:GET", 10, random -> {
+            Map<String, String> query = new HashMap<>();
+            query.put("date", date(random));
+            if (random.nextBoolean()) {
+                query.put("tableNumber", String.valueOf(1 + random.nextInt(tables)));
+            }
+            return event("/reservations", "GET", "/reservations", null, query, null, true);
+        }));
+        scenarios.add(new Scenario("/reservations:POST", 20, random ->
+                event("/reservations", "POST", "/reservations", null, null, reservation(random), true)));
+        scenarios.add(new Scenario("/reservations/{reservationId}/status:GET", 5, random -> {
+            String reservationId = UUID.randomUUID().toString();
+            return event("/reservations/{reservationId}/status", "GET", "/reservations/" + reservationId + "/status",
+                    Map.of("reservationId", reservationId), null, null, true);
+        }));
+        scenarios.add(new Scenario("/reservations/batch:POST", 2, random -> {
+            List<Map<String, Object>> batch = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                batch.add(reservation(random));
+            }
+            return event("/reservations/batch", "POST", "/reservations/batch", null, null, batch, true);
+        }));
+        scenarios.add(new Scenario("/signin:POST", 8, random ->
+                event("/signin", "POST", "/signin", null, null, Map.of("email", EMAIL, "password", PASSWORD), false)));
+        scenarios.add(new Scenario("/reservations:OPTIONS", 5, random ->
+                event("/reservations", "OPTIONS", "/reservations", null, null, null, false)));
+        return scenarios;
+    }
+
+    // Captured proxy events, one JSON object per line, replayed in proportion to how often each route occurs
+    private List<Scenario> replay(String file) throws IOException {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            byte[] event = line.replace("{{token}}", token).getBytes(StandardCharsets.UTF_8);
+            Map<String, Object> parsed = objectMapper.readValue(event, Map.class);
+            scenarios.add(new Scenario(parsed.get("resource") + ":" + parsed.get("httpMethod"), 1, random -> event));
+        }
+        return scenarios;
+    }
+
+    private Map<String, Samples> run(List<Scenario> scenarios, int threads, int warmupSeconds, int seconds) throws InterruptedException {
+        int totalWeight = 0;
+        for (Scenario scenario : scenarios) {
+            totalWeight += scenario.weight;
+        }
+        int[] cumulative = new int[scenarios.size()];
+        for (int i = 0, sum = 0; i < scenarios.size(); i++) {
+            sum += scenarios.get(i).weight;
+            cumulative[i] = sum;
+        }
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmupSeconds * 1_000_000_000L;
+        long end = measureFrom + seconds * 1_000_000_000L;
+        int weights = totalWeight;
+        List<Map<String, Samples>> perThread = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Map<String, Samples> samples = new HashMap<>();
+            perThread.add(samples);
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+                try {
+                    long now;
+                    while ((now = System.nanoTime()) < end) {
+                        int pick = Arrays.binarySearch(cumulative, random.nextInt(weights) + 1);
+                        Scenario scenario = scenarios.get(pick >= 0 ? pick : -pick - 1);
+                        byte[] event = scenario.events.apply(random);
+                        Context context = new LocalContext();
+
+                        out.reset();
+                        long began = System.nanoTime();
+                        beforeRequest.run();
+                        handler.handleRequest(new ByteArrayInputStream(event), out, context);
+                        long elapsed = System.nanoTime() - began;
+
+                        if (now >= measureFrom) {
+                            samples.computeIfAbsent(scenario.route, route -> new Samples())
+                                    .add(elapsed, statusCode(out.toByteArray()));
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            worker.start();
+        }
+        done.await();
+
+        Map<String, Samples> merged = new TreeMap<>();
+        for (Map<String, Samples> samples : perThread) {
+            for (Map.Entry<String, Samples> entry : samples.entrySet()) {
+                merged.computeIfAbsent(entry.getKey(), route -> new Samples()).addAll(entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    private static void report(Map<String, Samples> results, int seconds) {
+        System.out.printf("%-26s %9s %9s %9s %9s %9s %9s  %s%n", "route", "count", "req/s", "p50 us", "p99 us", "p99.9 us", "max us", "statuses");
+        Samples all = new Samples();
+        for (Map.Entry<String, Samples> entry : results.entrySet()) {
+            printRow(entry.getKey(), entry.getValue(), seconds);
+            all.addAll(entry.getValue());
+        }
+        printRow("all", all, seconds);
+    }
+
+    private static void printRow(String route, Samples samples, int seconds) {
+        long[] sorted = Arrays.copyOf(samples.latencies, samples.count);
+        Arrays.sort(sorted);
+        System.out.printf("%-26s %9d %9.0f %9d %9d %9d %9d  %s%n", route, samples.count, samples.count / (double) seconds,
+                percentile(sorted, 0.50) / 1_000, percentile(sorted, 0.99) / 1_000, percentile(sorted, 0.999) / 1_000,
+                sorted.length > 0 ? sorted[sorted.length - 1] / 1_000 : 0, samples.statuses);
+    }
+
+    // Nearest-rank percentile
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    // ResponseUtil.write puts statusCode first: {"statusCode":200,...
+    private static int statusCode(byte[] response) {
+        int status = 0;
+        for (int i = indexOf(response, (byte) ':') + 1; i < response.length && response[i] >= '0' && response[i] <= '9'; i++) {
+            status = status * 10 + (response[i] - '0');
+        }
+        return status;
+    }
+
+    private static int indexOf(byte[] bytes, byte value) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private byte[] invoke(byte[] event) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        handler.handleRequest(new ByteArrayInputStream(event), out, new LocalContext());
+        if (firstResponseNanos == 0) {
+            firstResponseNanos = System.nanoTime();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] expectOk(byte[] response) throws IOException {
+        Map<String, Object> parsed = objectMapper.readValue(response, Map.class);
+        if (!Integer.valueOf(200).equals(parsed.get("statusCode"))) {
+            throw new IllegalStateException("Seeding failed: " + new String(response, StandardCharsets.UTF_8));
+        }
+        return ((String) parsed.get("body")).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Proxy integration event as API Gateway sends it
+    private byte[] event(String resource, String method, String path, Map<String, String> pathParameters,
+                         Map<String, String> query, Object body, boolean authenticated) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "application/json");
+        headers.put("Content-Type", "application/json");
+        headers.put(Venue.HEADER, venue);
+        if (authenticated) {
+            headers.put("Authorization", "Bearer " + token);
+        }
+        Map<String, Object> requestContext = new HashMap<>();
+        requestContext.put("resourcePath", resource);
+        requestContext.put("httpMethod", method);
+        requestContext.put("stage", "api");
+        requestContext.put("requestId", UUID.randomUUID().toString());
+        requestContext.put("identity", Map.of("sourceIp", SOURCE_IP));
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("resource", resource);
+        event.put("path", path);
+        event.put("httpMethod", method);
+        event.put("headers", headers);
+        event.put("pathParameters", pathParameters);
+        event.put("queryStringParameters", query);
+        event.put("requestContext", requestContext);
+        event.put("isBase64Encoded", false);
+        try {
+            event.put("body", body != null ? objectMapper.writeValueAsString(body) : null);
+            return objectMapper.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Map<String, Object> reservation(ThreadLocalRandom random) {
+        int start = slotStart(random);
+        Map<String, Object> reservation = new HashMap<>();
+        reservation.put("tableNumber", 1 + random.nextInt(tables));
+        reservation.put("clientName", "Load Driver");
+        reservation.put("phoneNumber", "+380000000000");
+        reservation.put("date", date(random));
+        reservation.put("slotTimeStart", time(start));
+        reservation.put("slotTimeEnd", time(start + 60 + 30 * random.nextInt(3)));
+        return reservation;
+    }
+
+    private String date(ThreadLocalRandom random) {
+        return dates.get(random.nextInt(dates.size()));
+    }
+
+    // Half-hour starts between 10:00 and 20:30
+    private static int slotStart(ThreadLocalRandom random) {
+        return 10 * 60 + 30 * random.nextInt(22);
+    }
+
+    private static String time(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+
+    private static final class Scenario {
+        final String route;
+        final int weight;
+        final Function<ThreadLocalRandom, byte[]> events;
+
+        Scenario(String route, int weight, Function<ThreadLocalRandom, byte[]> events) {
+            this.route = route;
+            this.weight = weight;
+            this.events = events;
+        }
+    }
+
+    // Latencies in nanoseconds plus a count per status code; owned by one worker until the merge
+    private static final class Samples {
+        long[] latencies = new long[1024];
+        int count;
+        final Map<Integer, Long> statuses = new TreeMap<>();
+
+        void add(long nanos, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            statuses.merge(status, 1L, Long::sum);
+        }
+
+        void addAll(Samples other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + other.count));
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            other.statuses.forEach((status, n) -> statuses.merge(status, n, Long::sum));
+        }
+    }
+
+    // Just enough of the Lambda context for the handler: request id and the remaining-time deadline
+    private static final class LocalContext implements Context {
+        private final String requestId = UUID.randomUUID().toString();
+        private final long deadline = System.currentTimeMillis() + FUNCTION_TIMEOUT_MILLIS;
+
+        @Override
+        public String getAwsRequestId() {
+            return requestId;
+        }
+
+        @Override
+        public String getLogGroupName() {
+            return "/aws/lambda/api_handler";
+        }
+
+        @Override
+        public String getLogStreamName() {
+            return "local";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "api_handler";
+        }
+
+        @Override
+        public String getFunctionVersion() {
+            return "$LATEST";
+        }
+
+        @Override
+        public String getInvokedFunctionArn() {
+            return "arn:aws:lambda:local:000000000000:function:api_handler";
+        }
+
+        @Override
+        public CognitoIdentity getIdentity() {
+            return null;
+        }
+
+        @Override
+        public ClientContext getClientContext() {
+            return null;
+        }
+
+        @Override
+        public int getRemainingTimeInMillis() {
+            return (int) (deadline - System.currentTimeMillis());
+        }
+
+        @Override
+        public int getMemoryLimitInMB() {
+            return 512;
+        }
+
+        @Override
+        public LambdaLogger getLogger() {
+            return new LambdaLogger() {
+                @Override
+                public void log(String message) {
+                    System.err.print(message);
+                }
+
+                @Override
+                public void log(byte[] message) {
+                    System.err.write(message, 0, message.length);
+                }
+            };
+        }
+    }
+}
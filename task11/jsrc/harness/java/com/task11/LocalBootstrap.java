@@ -0,0 +1,21 @@
+package com.task11;
+
+import java.io.IOException;
+
+/**
+ * {@link NativeBootstrap} on the in-memory stand-ins used by {@link LoadDriver} instead of the AWS clients.
+ * {@link NativeHarness} starts it against its own runtime API on localhost, on a JVM or as the image built
+ * with {@code mvn package -Pnative,local}.
+ */
+public class LocalBootstrap {
+    public static void main(String[] args) throws IOException {
+        // Ті самі таблиці й імена, що в LoadDriver; токени видає InMemoryCognito
+        System.setProperty("TABLES_TABLE", "tables");
+        System.setProperty("RESERVATIONS_TABLE", "reservations");
+        System.setProperty("COGNITO_ID", "local-pool");
+        System.setProperty("CLIENT_ID", "local-client");
+        InMemoryCognito cognito = new InMemoryCognito("local-pool", "local-client", 0);
+        ApiHandler.install(cognito, LoadDriver.bookingTables(0), new InMemorySqs(0, 8), cognito.verifier());
+        NativeBootstrap.main(args);
+    }
+}
@@ -0,0 +1,261 @@
+package com.task11;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local check of the custom-runtime build: serves the Lambda runtime API on localhost, starts the given
+ * command against it, which must be {@link LocalBootstrap} (so the handler books on the in-memory stand-ins), and
+ * sends it a fixed sequence of API Gateway proxy events: preflight, sign-up, sign-in, then the table,
+ * reservation and availability routes with the issued token. Prints the time from process start to the
+ * first poll of the runtime API and, per event, the status and the time to its response; exits with 1 when a
+ * status is not the expected one or the function reports an init error.
+ * <p>
+ * The command is the image built with {@code mvn package -Pnative,local} or the same class on a JVM, which gives
+ * the two startups side by side.
+ * <p>
+ * Usage: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.task11.NativeHarness -Dexec.args="target/bootstrap"}
+ * or with {@code -Dexec.args="java -cp <test classpath> com.task11.LocalBootstrap"}
+ */
+public class NativeHarness {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String EMAIL = "native.harness@example.com";
+    private static final String PASSWORD = "Native-Harness-1";
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final String SOURCE_IP = "198.51.100.7";
+
+    private final BlockingQueue<Invocation> pending = new LinkedBlockingQueue<>();
+    private final Map<String, CompletableFuture<byte[]>> responses = new ConcurrentHashMap<>();
+    private final CompletableFuture<byte[]> initError = new CompletableFuture<>();
+    private final CompletableFuture<Long> firstPoll = new CompletableFuture<>();
+    private long started;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Usage: NativeHarness <command> [args...]");
+        }
+        NativeHarness harness = new NativeHarness();
+        HttpServer server = harness.serve();
+
+        ProcessBuilder builder = new ProcessBuilder(new ArrayList<>(Arrays.asList(args))).inheritIO();
+        builder.environment().put("AWS_LAMBDA_RUNTIME_API", "127.0.0.1:" + server.getAddress().getPort());
+        builder.environment().put("AWS_LAMBDA_FUNCTION_NAME", "api_handler");
+        builder.environment().put("AWS_LAMBDA_FUNCTION_MEMORY_SIZE", "512");
+        builder.environment().putIfAbsent("LOG_LEVEL", "WARN");
+        // Без REGION обробник не створює клієнтів AWS: їх підставляє LocalBootstrap
+        builder.environment().remove("REGION");
+
+        harness.started = System.nanoTime();
+        Process process = builder.start();
+        boolean passed;
+        try {
+            passed = harness.run();
+        } finally {
+            process.destroy();
+            server.stop(0);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        String date = LocalDate.now().plusDays(1).toString();
+        boolean passed = check("/tables:OPTIONS", event("/tables", "OPTIONS", null, null, null), 200) != null;
+        // Старт процесу до першого звернення за подією: ініціалізація рантайму й обробника
+        System.out.printf("%-22s %6s %9d ms%n", "(first poll)", "", firstPoll.getNow(-1L));
+
+        Map<String, Object> user = new HashMap<>();
+        user.put("email", EMAIL);
+        user.put("password", PASSWORD);
+        user.put("firstName", "Native");
+        user.put("lastName", "Harness");
+        passed &= check("/signup:POST", event("/signup", "POST", null, user, null), 200) != null;
+
+        Map<String, Object> signin = check("/signin:POST",
+                event("/signin", "POST", null, Map.of("email", EMAIL, "password", PASSWORD), null), 200);
+        if (signin == null) {
+            return false;
+        }
+        String token = (String) objectMapper.readValue((String) signin.get("body"), Map.class).get("idToken");
+
+        Map<String, Object> table = new HashMap<>();
+        table.put("id", 1);
+        table.put("number", 1);
+        table.put("places", 4);
+        table.put("isVip", false);
+        passed &= check("/tables:POST", event("/tables", "POST", null, table, token), 200) != null;
+        passed &= check("/tables:GET", event("/tables", "GET", null, null, token), 200) != null;
+
+        Map<String, Object> reservation = new HashMap<>();
+        reservation.put("tableNumber", 1);
+        reservation.put("clientName", "Native Harness");
+        reservation.put("phoneNumber", "+380000000000");
+        reservation.put("date", date);
+        reservation.put("slotTimeStart", "12:00");
+        reservation.put("slotTimeEnd", "13:00");
+        passed &= check("/reservations:POST", event("/reservations", "POST", null, reservation, token), 200) != null;
+
+        Map<String, String> query = new HashMap<>();
+        query.put("date", date);
+        query.put("from", "11:00");
+        query.put("to", "14:00");
+        query.put("places", "2");
+        passed &= check("/availability:GET", event("/availability", "GET", query, null, token), 200) != null;
+        return passed;
+    }
+
+    // The parsed proxy response, or null when it did not come or has another status
+    private Map<String, Object> check(String route, byte[] event, int expectedStatus) throws Exception {
+        String requestId = UUID.randomUUID().toString();
+        CompletableFuture<byte[]> response = new CompletableFuture<>();
+        responses.put(requestId, response);
+        pending.add(new Invocation(requestId, event));
+
+        Object outcome;
+        try {
+            outcome = CompletableFuture.anyOf(response, initError.thenApply(InitError::new)).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.out.printf("%-22s %6s %9d ms  %s%n", route, "-", millis(), e);
+            return null;
+        }
+        if (outcome instanceof InitError) {
+            System.out.printf("%-22s %6s %9d ms  init error: %s%n", route, "-", millis(),
+                    new String(((InitError) outcome).body, StandardCharsets.UTF_8));
+            return null;
+        }
+
+        Map<String, Object> parsed = objectMapper.readValue((byte[]) outcome, Map.class);
+        Object status = parsed.get("statusCode");
+        System.out.printf("%-22s %6s %9d ms%n", route, status, millis());
+        return Integer.valueOf(expectedStatus).equals(status) ? parsed : null;
+    }
+
+    private HttpServer serve() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // The next-invocation long poll holds its thread until there is an event
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "runtime-api");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/2018-06-01/runtime/", this::handle);
+        server.start();
+        return server;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        try {
+            if (path.endsWith("/invocation/next")) {
+                firstPoll.complete(millis());
+                Invocation invocation = pending.take();
+                exchange.getResponseHeaders().add("Lambda-Runtime-Aws-Request-Id", invocation.requestId);
+                exchange.getResponseHeaders().add("Lambda-Runtime-Deadline-Ms",
+                        String.valueOf(System.currentTimeMillis() + TIMEOUT_SECONDS * 1000));
+                exchange.getResponseHeaders().add("Lambda-Runtime-Invoked-Function-Arn",
+                        "arn:aws:lambda:local:000000000000:function:api_handler");
+                exchange.getResponseHeaders().add("Lambda-Runtime-Trace-Id", "Root=1-00000000-000000000000000000000000");
+                respond(exchange, 200, invocation.event);
+            } else if (path.endsWith("/init/error")) {
+                initError.complete(body);
+                respond(exchange, 202, new byte[0]);
+            } else if (path.endsWith("/response") || path.endsWith("/error")) {
+                String[] segments = path.split("/");
+                CompletableFuture<byte[]> response = responses.remove(segments[segments.length - 2]);
+                if (response != null) {
+                    if (path.endsWith("/error")) {
+                        response.completeExceptionally(new IllegalStateException(new String(body, StandardCharsets.UTF_8)));
+                    } else {
+                        response.complete(body);
+                    }
+                }
+                respond(exchange, 202, new byte[0]);
+            } else {
+                respond(exchange, 404, new byte[0]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    private long millis() {
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+
+    // Proxy integration event as API Gateway sends it
+    private static byte[] event(String resource, String method, Map<String, String> query, Object body, String token) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        if (token != null) {
+            headers.put("Authorization", "Bearer " + token);
+        }
+        Map<String, Object> requestContext = new HashMap<>();
+        requestContext.put("resourcePath", resource);
+        requestContext.put("httpMethod", method);
+        requestContext.put("stage", "api");
+        requestContext.put("identity", Map.of("sourceIp", SOURCE_IP));
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("resource", resource);
+        event.put("path", resource);
+        event.put("httpMethod", method);
+        event.put("headers", headers);
+        event.put("queryStringParameters", query);
+        event.put("requestContext", requestContext);
+        event.put("isBase64Encoded", false);
+        event.put("body", body != null ? objectMapper.writeValueAsString(body) : null);
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    private static final class Invocation {
+        final String requestId;
+        final byte[] event;
+
+        Invocation(String requestId, byte[] event) {
+            this.requestId = requestId;
+            this.event = event;
+        }
+    }
+
+    private static final class InitError {
+        final byte[] body;
+
+        InitError(byte[] body) {
+            this.body = body;
+        }
+    }
+}
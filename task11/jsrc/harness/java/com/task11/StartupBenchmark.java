@@ -0,0 +1,134 @@
+package com.task11;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cold start with and without the SnapStart priming: starts fresh JVMs on this classpath, alternating the two
+ * configurations, each running {@code LoadDriver once=true} (seeding, every route once, then the intake handler)
+ * against the in-memory stand-ins, and prints the median time from JVM start to the end of init, to the first
+ * response and to the end of the pass, plus the wall time of the process.
+ * <p>
+ * {@code cold} is a plain cold start: init builds the handler and the first requests load and warm up the rest.
+ * {@code primed} also runs, as part of init, the priming {@code CheckpointHooks} runs before the snapshot is taken.
+ * A container restored from that snapshot skips init, so its first requests cost about the {@code primed} row's
+ * "after init" times, against the {@code cold} row's init plus "after init".
+ * <p>
+ * Usage: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.task11.StartupBenchmark -Dexec.args="[runs=5]"}
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+
+        List<Run> cold = new ArrayList<>();
+        List<Run> primed = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            cold.add(run(command(java, classpath, false)));
+            primed.add(run(command(java, classpath, true)));
+        }
+
+        System.out.printf("%-8s %5s %9s %15s %15s %10s %10s%n", "config", "runs", "init ms",
+                "first resp ms*", "pass ms*", "wall ms", "min wall");
+        print("cold", cold);
+        print("primed", primed);
+        System.out.println("* after init: what a container restored from the snapshot still pays");
+    }
+
+    private static List<String> command(String java, String classpath, boolean prime) {
+        return List.of(java, "-cp", classpath, LoadDriver.class.getName(), "once=true", "prime=" + prime,
+                "asyncIntake=true", "tables=10", "days=2");
+    }
+
+    private static Run run(List<String> command) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.environment().put("LOG_LEVEL", "WARN");
+        // Без REGION обробник не створює клієнтів AWS: їх підставляє LoadDriver
+        builder.environment().remove("REGION");
+        long start = System.nanoTime();
+        Process process = builder.start();
+
+        Run run = new Run();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (!line.startsWith("initMillis=")) {
+                    continue;
+                }
+                for (String field : line.split(" ")) {
+                    long value = field.startsWith("statuses=") ? 0 : parse(field);
+                    if (field.startsWith("initMillis=")) {
+                        run.initMillis = value;
+                    } else if (field.startsWith("firstResponseMillis=")) {
+                        run.firstResponseMillis = value;
+                    } else if (field.startsWith("totalMillis=")) {
+                        run.totalMillis = value;
+                    }
+                }
+            }
+        }
+        run.exitCode = process.waitFor();
+        run.wallMillis = (System.nanoTime() - start) / 1_000_000;
+        if (run.exitCode != 0 || run.totalMillis == 0) {
+            throw new IllegalStateException("Startup run failed (exit " + run.exitCode + "): " + String.join(" ", command));
+        }
+        return run;
+    }
+
+    private static long parse(String field) {
+        try {
+            return Long.parseLong(field.substring(field.indexOf('=') + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void print(String config, List<Run> runs) {
+        long[] init = new long[runs.size()];
+        long[] first = new long[runs.size()];
+        long[] pass = new long[runs.size()];
+        long[] wall = new long[runs.size()];
+        for (int i = 0; i < runs.size(); i++) {
+            Run run = runs.get(i);
+            init[i] = run.initMillis;
+            first[i] = run.firstResponseMillis - run.initMillis;
+            pass[i] = run.totalMillis - run.initMillis;
+            wall[i] = run.wallMillis;
+        }
+        Arrays.sort(wall);
+        System.out.printf("%-8s %5d %9d %15d %15d %10d %10d%n", config, runs.size(), median(init), median(first),
+                median(pass), median(wall), wall.length > 0 ? wall[0] : 0);
+    }
+
+    private static long median(long[] values) {
+        if (values.length == 0) {
+            return 0;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[(sorted.length - 1) / 2];
+    }
+
+    private static final class Run {
+        long initMillis;
+        long firstResponseMillis;
+        long totalMillis;
+        long wallMillis;
+        int exitCode;
+    }
+}
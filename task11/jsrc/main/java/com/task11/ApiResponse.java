@@ -0,0 +1,28 @@
+package com.task11;
+
+import java.util.Map;
+
+// API Gateway proxy response; the body is serialized only when it is written out
+class ApiResponse {
+    private final int statusCode;
+    private final Map<String, String> headers;
+    private final Object body;
+
+    public ApiResponse(int statusCode, Map<String, String> headers, Object body) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public Object getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,115 @@
+package com.task11;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Map;
+
+// Accessors and JSON rendering for SDK v2 attribute maps
+final class DynamoItems {
+
+    private DynamoItems() {
+    }
+
+    static Map<String, AttributeValue> key(String name, String value) {
+        return Map.of(name, AttributeValue.fromS(value));
+    }
+
+    static AttributeValue number(long value) {
+        return AttributeValue.fromN(Long.toString(value));
+    }
+
+    static boolean has(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value != null && !Boolean.TRUE.equals(value.nul());
+    }
+
+    static String getString(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value != null ? value.s() : null;
+    }
+
+    static int getInt(Map<String, AttributeValue> item, String name) {
+        return Integer.parseInt(item.get(name).n());
+    }
+
+    static long getLong(Map<String, AttributeValue> item, String name) {
+        return Long.parseLong(item.get(name).n());
+    }
+
+    static boolean getBoolean(Map<String, AttributeValue> item, String name) {
+        return item.get(name).bool();
+    }
+
+    // Writes the item as a JSON object, leaving out the given internal attribute (null for none)
+    static void writeItem(JsonGenerator generator, Map<String, AttributeValue> item, String skip) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            if (!attribute.getKey().equals(skip)) {
+                generator.writeFieldName(attribute.getKey());
+                writeValue(generator, attribute.getValue());
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    static void writeValue(JsonGenerator generator, AttributeValue value) throws IOException {
+        switch (value.type()) {
+            case S:
+                generator.writeString(value.s());
+                break;
+            case N:
+                generator.writeNumber(new BigDecimal(value.n()));
+                break;
+            case BOOL:
+                generator.writeBoolean(value.bool());
+                break;
+            case NUL:
+                generator.writeNull();
+                break;
+            case B:
+                generator.writeBinary(value.b().asByteArray());
+                break;
+            case M:
+                generator.writeStartObject();
+                for (Map.Entry<String, AttributeValue> entry : value.m().entrySet()) {
+                    generator.writeFieldName(entry.getKey());
+                    writeValue(generator, entry.getValue());
+                }
+                generator.writeEndObject();
+                break;
+            case L:
+                generator.writeStartArray();
+                for (AttributeValue element : value.l()) {
+                    writeValue(generator, element);
+                }
+                generator.writeEndArray();
+                break;
+            case SS:
+                generator.writeStartArray();
+                for (String element : value.ss()) {
+                    generator.writeString(element);
+                }
+                generator.writeEndArray();
+                break;
+            case NS:
+                generator.writeStartArray();
+                for (String element : value.ns()) {
+                    generator.writeNumber(new BigDecimal(element));
+                }
+                generator.writeEndArray();
+                break;
+            case BS:
+                generator.writeStartArray();
+                for (var element : value.bs()) {
+                    generator.writeBinary(element.asByteArray());
+                }
+                generator.writeEndArray();
+                break;
+            default:
+                generator.writeNull();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.task11;
+
+class InvalidTokenException extends RuntimeException {
+    InvalidTokenException(String message) {
+        super(message);
+    }
+}
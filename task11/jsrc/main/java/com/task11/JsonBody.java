@@ -0,0 +1,10 @@
+package com.task11;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+// Body that writes itself item by item instead of being materialized as maps first
+interface JsonBody {
+    void writeTo(JsonGenerator generator) throws IOException;
+}
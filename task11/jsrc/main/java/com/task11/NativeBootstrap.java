@@ -0,0 +1,180 @@
+package com.task11;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Entry point of the native-image build ({@code mvn package -Pnative}) for the {@code provided.al2} custom
+ * runtime: the binary is the function's {@code bootstrap}. It creates {@link ApiHandler} once and then
+ * serves invocations over the Lambda runtime API ({@code AWS_LAMBDA_RUNTIME_API}): it takes the next event,
+ * runs {@code handleRequest} and posts the response, or the error, back.
+ * <p>
+ * The local harness ({@code jsrc/harness/java}) starts it on in-memory stand-ins through {@code LocalBootstrap}.
+ */
+public class NativeBootstrap {
+    // Задається лише в образі native-image: "buildtime" під час збірки, "runtime" під час виконання
+    static final boolean IN_IMAGE = "runtime".equals(System.getProperty("org.graalvm.nativeimage.imagecode"));
+
+    private static final String RUNTIME_API_VERSION = "2018-06-01";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static void main(String[] args) throws IOException {
+        String runtimeApi = "http://" + System.getenv("AWS_LAMBDA_RUNTIME_API") + "/" + RUNTIME_API_VERSION + "/runtime";
+
+        ApiHandler handler;
+        try {
+            handler = new ApiHandler();
+        } catch (RuntimeException | Error e) {
+            // Помилка ініціалізації: рантайм перезапустить середовище
+            post(runtimeApi + "/init/error", error(e));
+            throw e;
+        }
+
+        while (true) {
+            HttpURLConnection next = (HttpURLConnection) new URL(runtimeApi + "/invocation/next").openConnection();
+            // Long poll: the runtime API answers when there is an event
+            next.setReadTimeout(0);
+            byte[] event;
+            try (InputStream in = next.getInputStream()) {
+                event = in.readAllBytes();
+            }
+            String requestId = next.getHeaderField("Lambda-Runtime-Aws-Request-Id");
+            String traceId = next.getHeaderField("Lambda-Runtime-Trace-Id");
+            if (traceId != null) {
+                System.setProperty("com.amazonaws.xray.traceHeader", traceId);
+            }
+            RuntimeContext context = new RuntimeContext(requestId,
+                    Long.parseLong(next.getHeaderField("Lambda-Runtime-Deadline-Ms")),
+                    next.getHeaderField("Lambda-Runtime-Invoked-Function-Arn"));
+
+            ByteArrayOutputStream response = new ByteArrayOutputStream(4096);
+            try {
+                handler.handleRequest(new ByteArrayInputStream(event), response, context);
+            } catch (Exception e) {
+                Log.warn("Виклик завершився помилкою", "requestId", requestId, e);
+                Log.flush();
+                post(runtimeApi + "/invocation/" + requestId + "/error", error(e));
+                continue;
+            }
+            post(runtimeApi + "/invocation/" + requestId + "/response", response.toByteArray());
+        }
+    }
+
+    private static void post(String url, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        if (url.endsWith("/error")) {
+            connection.setRequestProperty("Lambda-Runtime-Function-Error-Type", "Unhandled");
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        // Відповідь треба дочитати, щоб з'єднання повернулося в пул keep-alive
+        try (InputStream in = connection.getInputStream()) {
+            in.readAllBytes();
+        }
+    }
+
+    private static byte[] error(Throwable e) throws IOException {
+        if (e instanceof ExceptionInInitializerError && e.getCause() != null) {
+            e = e.getCause();
+        }
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("errorMessage", String.valueOf(e.getMessage()));
+        error.put("errorType", e.getClass().getName());
+        return objectMapper.writeValueAsBytes(error);
+    }
+
+    private static final class RuntimeContext implements Context {
+        private final String requestId;
+        private final long deadline;
+        private final String functionArn;
+
+        RuntimeContext(String requestId, long deadline, String functionArn) {
+            this.requestId = requestId;
+            this.deadline = deadline;
+            this.functionArn = functionArn;
+        }
+
+        @Override
+        public String getAwsRequestId() {
+            return requestId;
+        }
+
+        @Override
+        public String getLogGroupName() {
+            return System.getenv("AWS_LAMBDA_LOG_GROUP_NAME");
+        }
+
+        @Override
+        public String getLogStreamName() {
+            return System.getenv("AWS_LAMBDA_LOG_STREAM_NAME");
+        }
+
+        @Override
+        public String getFunctionName() {
+            return System.getenv("AWS_LAMBDA_FUNCTION_NAME");
+        }
+
+        @Override
+        public String getFunctionVersion() {
+            return System.getenv("AWS_LAMBDA_FUNCTION_VERSION");
+        }
+
+        @Override
+        public String getInvokedFunctionArn() {
+            return functionArn;
+        }
+
+        @Override
+        public CognitoIdentity getIdentity() {
+            return null;
+        }
+
+        @Override
+        public ClientContext getClientContext() {
+            return null;
+        }
+
+        @Override
+        public int getRemainingTimeInMillis() {
+            return (int) (deadline - System.currentTimeMillis());
+        }
+
+        @Override
+        public int getMemoryLimitInMB() {
+            String memory = System.getenv("AWS_LAMBDA_FUNCTION_MEMORY_SIZE");
+            return memory != null ? Integer.parseInt(memory) : 0;
+        }
+
+        @Override
+        public LambdaLogger getLogger() {
+            return new LambdaLogger() {
+                @Override
+                public void log(String message) {
+                    System.out.print(message);
+                }
+
+                @Override
+                public void log(byte[] message) {
+                    System.out.write(message, 0, message.length);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.task11;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Opaque pagination cursor: base64url-encoded JSON of the last evaluated key
+class PageCursor {
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<LinkedHashMap<String, Object>> KEY_TYPE = new TypeReference<LinkedHashMap<String, Object>>() {
+    };
+
+    private PageCursor() {
+    }
+
+    public static int parseLimit(String limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            int value = Integer.parseInt(limit);
+            if (value >= 1 && value <= MAX_LIMIT) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Параметр 'limit' має бути числом від 1 до " + MAX_LIMIT);
+    }
+
+    public static String encode(Map<String, Object> key) {
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(key));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode page cursor: " + e.getMessage());
+        }
+    }
+
+    public static Map<String, Object> decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(Base64.getUrlDecoder().decode(token), KEY_TYPE);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Невірний параметр 'nextToken'");
+        }
+    }
+
+    // LastEvaluatedKey -> mutable cursor map, empty when there is no next page;
+    // the key attributes used here are strings or numbers
+    public static Map<String, Object> fromLastEvaluatedKey(Map<String, AttributeValue> lastEvaluatedKey) {
+        Map<String, Object> key = new LinkedHashMap<>();
+        if (lastEvaluatedKey != null) {
+            for (Map.Entry<String, AttributeValue> entry : lastEvaluatedKey.entrySet()) {
+                AttributeValue value = entry.getValue();
+                key.put(entry.getKey(), value.n() != null ? new BigDecimal(value.n()) : value.s());
+            }
+        }
+        return key;
+    }
+
+    // Cursor -> ExclusiveStartKey
+    public static Map<String, AttributeValue> toExclusiveStartKey(Map<String, Object> key) {
+        Map<String, AttributeValue> startKey = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : key.entrySet()) {
+            Object value = entry.getValue();
+            startKey.put(entry.getKey(), value instanceof Number
+                    ? AttributeValue.fromN(value.toString())
+                    : AttributeValue.fromS(String.valueOf(value)));
+        }
+        return startKey;
+    }
+}
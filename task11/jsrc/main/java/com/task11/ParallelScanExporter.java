@@ -0,0 +1,108 @@
+package com.task11;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Streams a whole table as NDJSON using a DynamoDB parallel scan.
+// Each segment is scanned by its own worker; rows are buffered per worker and flushed
+// to the shared output in chunks, so memory stays bounded by workers * FLUSH_THRESHOLD.
+class ParallelScanExporter {
+    static final int MAX_WORKERS = 16;
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    // Source of one scan segment; a DynamoDB table in production, any in-memory stand-in locally
+    interface SegmentScanner {
+        Iterable<Map<String, AttributeValue>> scan(int segment, int totalSegments);
+    }
+
+    private final SegmentScanner scanner;
+    private final int totalSegments;
+
+    public ParallelScanExporter(SegmentScanner scanner, int totalSegments) {
+        this.scanner = scanner;
+        this.totalSegments = totalSegments;
+    }
+
+    // Scans the reservations table, leaving out the internal "#" items (slot locks, occupancy) stored next to them
+    static SegmentScanner reservationsScanner(DynamoDbClient dynamoDb, String tableName) {
+        return (segment, totalSegments) -> dynamoDb.scanPaginator(reservationsScan(tableName, segment, totalSegments)).items();
+    }
+
+    static ScanRequest reservationsScan(String tableName, int segment, int totalSegments) {
+        return ScanRequest.builder()
+                .tableName(tableName)
+                .filterExpression(ReservationService.NOT_INTERNAL_ITEM)
+                .expressionAttributeValues(Map.of(":internal", AttributeValue.fromS(ReservationService.INTERNAL_ID_PREFIX)))
+                .segment(segment)
+                .totalSegments(totalSegments)
+                .build();
+    }
+
+    // Returns the number of exported items
+    public long export(OutputStream out) throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(totalSegments, MAX_WORKERS));
+        try {
+            List<Future<Long>> segments = new ArrayList<>(totalSegments);
+            for (int segment = 0; segment < totalSegments; segment++) {
+                int current = segment;
+                segments.add(workers.submit(() -> exportSegment(current, out)));
+            }
+
+            long exported = 0;
+            for (Future<Long> segment : segments) {
+                try {
+                    exported += segment.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Segment export failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+            return exported;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private long exportSegment(int segment, OutputStream out) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(FLUSH_THRESHOLD + 4096);
+        long count = 0;
+        try (JsonGenerator generator = jsonFactory.createGenerator(buffer)) {
+            generator.setRootValueSeparator(null);
+            for (Map<String, AttributeValue> item : scanner.scan(segment, totalSegments)) {
+                DynamoItems.writeItem(generator, item, null);
+                generator.flush();
+                buffer.write('\n');
+                count++;
+                if (buffer.size() >= FLUSH_THRESHOLD) {
+                    flush(buffer, out);
+                }
+            }
+        }
+        flush(buffer, out);
+        return count;
+    }
+
+    private void flush(ByteArrayOutputStream buffer, OutputStream out) throws IOException {
+        if (buffer.size() == 0) {
+            return;
+        }
+        synchronized (out) {
+            buffer.writeTo(out);
+        }
+        buffer.reset();
+    }
+}
@@ -0,0 +1,32 @@
+package com.task11;
+
+// Message body of the reservation intake queue: the validated request with the id already promised to the client
+class QueuedReservation {
+    private String reservationId;
+    private String venue;
+    private ReservationRequest reservation;
+
+    public String getReservationId() {
+        return reservationId;
+    }
+
+    public void setReservationId(String reservationId) {
+        this.reservationId = reservationId;
+    }
+
+    public String getVenue() {
+        return venue;
+    }
+
+    public void setVenue(String venue) {
+        this.venue = venue;
+    }
+
+    public ReservationRequest getReservation() {
+        return reservation;
+    }
+
+    public void setReservation(ReservationRequest reservation) {
+        this.reservation = reservation;
+    }
+}
@@ -0,0 +1,540 @@
+package com.task11;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Creates many reservations in one request (group bookings, imports from the old system).
+// The occupancy bitmap of every affected table-day is read once and overlaps are checked in memory,
+// against the stored bookings and against earlier items of the same batch. Each touched day's bitmap
+// is then claimed with a version-conditioned put, so a single booking racing with the batch sees the
+// new bits, and only after that do the reservations and their slot locks go out in 25-item
+// BatchWriteItem chunks. An item whose writes did not all land is undone: what did land is deleted
+// and its bits are cleared again, so it fails as a whole and can simply be retried.
+class ReservationBatchService {
+    static final int MAX_BATCH_SIZE = 500;
+    static final int WRITE_CHUNK_SIZE = 25;
+    static final int READ_CHUNK_SIZE = 100;
+    static final int WRITE_LANES = 4;
+    static final int MAX_WRITE_ATTEMPTS = 5;
+    static final long BASE_BACKOFF_MILLIS = 50;
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String reservationsTableName;
+    private final TableCatalogs tableCatalogs;
+
+    public ReservationBatchService(DynamoDbAsyncClient dynamoDb, String reservationsTableName, TableCatalogs tableCatalogs) {
+        this.dynamoDb = dynamoDb;
+        this.reservationsTableName = reservationsTableName;
+        this.tableCatalogs = tableCatalogs;
+    }
+
+    public CompletableFuture<ApiResponse> createReservations(Venue venue, List<ReservationRequest> reservations) {
+        if (reservations == null || reservations.isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Відсутні бронювання"));
+        }
+        if (reservations.size() > MAX_BATCH_SIZE) {
+            return CompletableFuture.completedFuture(
+                    ResponseUtil.createResponse(400, "Не більше " + MAX_BATCH_SIZE + " бронювань за запит"));
+        }
+
+        return apply(new Batch(venue, reservations, null)).thenApply(Batch::toResponse);
+    }
+
+    // Books reservations whose ids were handed out when they were queued (see ReservationIntakeHandler).
+    // Completes with the outcome of every item; the caller checks them item by item
+    CompletableFuture<Batch> applyReservations(Venue venue, List<ReservationRequest> reservations, String[] reservationIds) {
+        return apply(new Batch(venue, reservations, reservationIds)).thenCompose(this::recheckOverlaps);
+    }
+
+    // Writes the reservations and slot locks of queued items whose bits an earlier delivery already claimed
+    // and whose writes landed only in part; nothing is claimed again. Items still not written are undone
+    CompletableFuture<Batch> finishReservations(Venue venue, List<ReservationRequest> reservations, String[] reservationIds) {
+        Batch batch = new Batch(venue, reservations, reservationIds);
+        List<Integer> all = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            all.add(i);
+        }
+        return writeReservations(batch, all).thenApply(done -> batch);
+    }
+
+    // An overlap that no other reservation's slot lock accounts for comes from bits whose writes have not
+    // landed: a batch still writing, or a claim of this very item that could not be cleared. Rejecting it
+    // for good could reject a request over its own bits, so it is retried instead
+    private CompletableFuture<Batch> recheckOverlaps(Batch batch) {
+        Map<Integer, List<String>> lockIds = new LinkedHashMap<>();
+        Set<String> ids = new LinkedHashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.overlapping[i]) {
+                ReservationRequest reservation = batch.reservations.get(i);
+                List<String> locks = ReservationService.slotLockIds(batch.venue, reservation.getTableNumber(), reservation.getDate(),
+                        reservation.getSlotTimeStart(), reservation.getSlotTimeEnd());
+                lockIds.put(i, locks);
+                ids.addAll(locks);
+            }
+        }
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(batch);
+        }
+        return loadItems(ids).thenApply(stored -> {
+            for (Map.Entry<Integer, List<String>> item : lockIds.entrySet()) {
+                int index = item.getKey();
+                boolean held = false;
+                for (String lockId : item.getValue()) {
+                    Map<String, AttributeValue> lock = stored.get(lockId);
+                    held |= lock != null && !batch.assignedIds[index].equals(DynamoItems.getString(lock, "reservationId"));
+                }
+                if (!held) {
+                    batch.errors[index] = "Слоти зайняті записом, що ще не завершився";
+                    batch.retryable[index] = true;
+                }
+            }
+            return batch;
+        });
+    }
+
+    private CompletableFuture<Batch> apply(Batch batch) {
+        List<ReservationRequest> reservations = batch.reservations;
+        Venue venue = batch.venue;
+        for (int i = 0; i < batch.size(); i++) {
+            ReservationRequest reservation = reservations.get(i);
+            batch.errors[i] = reservation == null ? "Порожнє бронювання" : ValidationUtil.validateReservation(reservation);
+        }
+
+        return tableCatalogs.of(venue).currentAsync().thenCompose(snapshot -> {
+            // Групуємо валідні бронювання за днем столу: кожен бітмап читаємо і пишемо один раз
+            Map<String, List<Integer>> byDay = new LinkedHashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.errors[i] != null) {
+                    continue;
+                }
+                ReservationRequest reservation = reservations.get(i);
+                if (snapshot.findByNumber(reservation.getTableNumber()) == null) {
+                    batch.errors[i] = "Table not found";
+                    continue;
+                }
+                byDay.computeIfAbsent(ReservationService.occupancyId(venue, reservation.getTableNumber(), reservation.getDate()),
+                        day -> new ArrayList<>()).add(i);
+            }
+            return claimDays(batch, byDay, 1);
+        }).thenCompose(accepted -> writeReservations(batch, accepted)).thenApply(done -> batch);
+    }
+
+    // Checks the items of each day against its bitmap and claims the new bitmap; days changed
+    // concurrently are re-read and re-checked. Completes with the indices that may be written.
+    private CompletableFuture<List<Integer>> claimDays(Batch batch, Map<String, List<Integer>> byDay, int attempt) {
+        if (byDay.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        return loadItems(byDay.keySet()).thenCompose(stored -> {
+            Map<String, List<Integer>> claimed = new LinkedHashMap<>();
+            Map<String, CompletableFuture<Boolean>> claims = new LinkedHashMap<>();
+            for (Map.Entry<String, List<Integer>> day : byDay.entrySet()) {
+                Map<String, AttributeValue> occupancy = stored.get(day.getKey());
+                boolean exists = occupancy != null && DynamoItems.has(occupancy, ReservationService.OCCUPANCY_BITS);
+                long[] bits = exists
+                        ? SlotBitmap.fromBytes(occupancy.get(ReservationService.OCCUPANCY_BITS).b().asByteArray())
+                        : SlotBitmap.empty();
+                long version = exists ? DynamoItems.getLong(occupancy, "version") : 0;
+
+                List<Integer> fits = new ArrayList<>();
+                for (int index : day.getValue()) {
+                    ReservationRequest reservation = batch.reservations.get(index);
+                    long[] requested = SlotBitmap.mask(ReservationService.timeToMinutes(reservation.getSlotTimeStart()),
+                            ReservationService.timeToMinutes(reservation.getSlotTimeEnd()));
+                    if (SlotBitmap.intersects(bits, requested)) {
+                        batch.errors[index] = "Reservation overlaps with an existing reservation";
+                        batch.overlapping[index] = true;
+                    } else {
+                        bits = SlotBitmap.union(bits, requested);
+                        fits.add(index);
+                    }
+                }
+                if (!fits.isEmpty()) {
+                    ReservationRequest first = batch.reservations.get(fits.get(0));
+                    long[] claimedBits = bits;
+                    claimed.put(day.getKey(), fits);
+                    // null: the put failed and may or may not have landed
+                    claims.put(day.getKey(), claim(batch.venue, first.getTableNumber(), first.getDate(), claimedBits, version)
+                            .handle((claimedDay, error) -> {
+                                if (error == null) {
+                                    return CompletableFuture.completedFuture(claimedDay);
+                                }
+                                Log.warn("Не вдалося зайняти слоти пакета", "day", day.getKey(), Futures.unwrap(error));
+                                return releaseIfClaimed(batch, fits, claimedBits, version + 1).thenApply(done -> (Boolean) null);
+                            }).thenCompose(next -> next));
+                }
+            }
+
+            return CompletableFuture.allOf(claims.values().toArray(new CompletableFuture<?>[0])).thenCompose(done -> {
+                List<Integer> accepted = new ArrayList<>();
+                Map<String, List<Integer>> retry = new LinkedHashMap<>();
+                for (Map.Entry<String, List<Integer>> day : claimed.entrySet()) {
+                    Boolean claimedDay = claims.get(day.getKey()).join();
+                    if (Boolean.TRUE.equals(claimedDay)) {
+                        accepted.addAll(day.getValue());
+                    } else if (claimedDay != null && attempt < ReservationService.MAX_BOOKING_ATTEMPTS) {
+                        retry.put(day.getKey(), day.getValue());
+                    } else {
+                        for (int index : day.getValue()) {
+                            batch.errors[index] = claimedDay == null
+                                    ? "Не вдалося записати бронювання"
+                                    : "Стіл бронюють одночасно з пакетом, повторіть запит";
+                            batch.retryable[index] = true;
+                        }
+                    }
+                }
+                return claimDays(batch, retry, attempt + 1).thenApply(retried -> {
+                    accepted.addAll(retried);
+                    return accepted;
+                });
+            });
+        });
+    }
+
+    // After a failed claim: when the stored bitmap is exactly the one the claim wrote, the claim did land
+    // and nothing has been booked on top of it, so its items' bits are cleared again. Otherwise they are
+    // left alone: clearing them could free slots another booking holds
+    private CompletableFuture<Void> releaseIfClaimed(Batch batch, List<Integer> items, long[] claimedBits, long claimedVersion) {
+        ReservationRequest first = batch.reservations.get(items.get(0));
+        String id = ReservationService.occupancyId(batch.venue, first.getTableNumber(), first.getDate());
+        return loadItems(List.of(id)).thenCompose(stored -> {
+            Map<String, AttributeValue> occupancy = stored.get(id);
+            if (occupancy == null || !DynamoItems.has(occupancy, ReservationService.OCCUPANCY_BITS)
+                    || DynamoItems.getLong(occupancy, "version") != claimedVersion
+                    || !Arrays.equals(SlotBitmap.fromBytes(occupancy.get(ReservationService.OCCUPANCY_BITS).b().asByteArray()), claimedBits)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return release(batch, items);
+        }).exceptionally(error -> {
+            Log.warn("Не вдалося перевірити слоти пакета", "day", id, Futures.unwrap(error));
+            return null;
+        });
+    }
+
+    // False when the day's bitmap changed since it was read
+    private CompletableFuture<Boolean> claim(Venue venue, int tableNumber, String date, long[] bits, long readVersion) {
+        PutItemRequest.Builder put = PutItemRequest.builder()
+                .tableName(reservationsTableName)
+                .item(ReservationService.occupancyItem(venue, tableNumber, date, bits, readVersion + 1));
+        if (readVersion == 0) {
+            put.conditionExpression("attribute_not_exists(id)");
+        } else {
+            put.conditionExpression("version = :version")
+                    .expressionAttributeValues(Map.of(":version", DynamoItems.number(readVersion)));
+        }
+        return dynamoDb.putItem(put.build()).handle((written, error) -> {
+            if (error == null) {
+                return true;
+            }
+            Throwable cause = Futures.unwrap(error);
+            if (cause instanceof ConditionalCheckFailedException) {
+                return false;
+            }
+            throw new CompletionException(cause);
+        });
+    }
+
+    // Consistent BatchGetItem of reservations-table items by id (occupancy bitmaps, reservations),
+    // 100 keys per call, unprocessed keys retried. Missing items are absent from the result
+    CompletableFuture<Map<String, Map<String, AttributeValue>>> loadItems(Collection<String> ids) {
+        Map<String, Map<String, AttributeValue>> stored = new ConcurrentHashMap<>();
+        List<Map<String, AttributeValue>> keys = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            keys.add(DynamoItems.key("id", id));
+        }
+        List<CompletableFuture<Void>> reads = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += READ_CHUNK_SIZE) {
+            reads.add(readChunk(keys.subList(from, Math.min(from + READ_CHUNK_SIZE, keys.size())), stored, 1));
+        }
+        return CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).thenApply(done -> stored);
+    }
+
+    private CompletableFuture<Void> readChunk(List<Map<String, AttributeValue>> keys,
+                                              Map<String, Map<String, AttributeValue>> stored, int attempt) {
+        BatchGetItemRequest request = BatchGetItemRequest.builder()
+                .requestItems(Map.of(reservationsTableName, KeysAndAttributes.builder()
+                        .keys(keys)
+                        .consistentRead(true)
+                        .build()))
+                .build();
+        return dynamoDb.batchGetItem(request).thenCompose(response -> {
+            List<Map<String, AttributeValue>> items = response.responses().get(reservationsTableName);
+            if (items != null) {
+                for (Map<String, AttributeValue> item : items) {
+                    stored.put(DynamoItems.getString(item, "id"), item);
+                }
+            }
+            KeysAndAttributes unprocessed = response.unprocessedKeys().get(reservationsTableName);
+            if (unprocessed == null || unprocessed.keys().isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (attempt >= MAX_WRITE_ATTEMPTS) {
+                throw new IllegalStateException("Не вдалося прочитати зайнятість столів");
+            }
+            return after(backoff(attempt)).thenCompose(ready -> readChunk(unprocessed.keys(), stored, attempt + 1));
+        });
+    }
+
+    // Reservations and slot locks of the accepted items, in 25-item chunks over a few parallel lanes
+    private CompletableFuture<Void> writeReservations(Batch batch, List<Integer> accepted) {
+        List<WriteRequest> writes = new ArrayList<>();
+        Map<String, Integer> owners = new HashMap<>();
+        for (int index : accepted) {
+            ReservationRequest reservation = batch.reservations.get(index);
+            String reservationId = batch.assignedIds != null ? batch.assignedIds[index] : UUID.randomUUID().toString();
+            batch.reservationIds[index] = reservationId;
+            owners.put(reservationId, index);
+            writes.add(put(ReservationService.reservationItem(batch.venue, reservationId, reservation)));
+            for (String lockId : ReservationService.slotLockIds(batch.venue, reservation.getTableNumber(), reservation.getDate(),
+                    reservation.getSlotTimeStart(), reservation.getSlotTimeEnd())) {
+                writes.add(put(ReservationService.slotLockItem(lockId, reservationId)));
+            }
+        }
+
+        List<List<WriteRequest>> chunks = new ArrayList<>();
+        for (int from = 0; from < writes.size(); from += WRITE_CHUNK_SIZE) {
+            chunks.add(writes.subList(from, Math.min(from + WRITE_CHUNK_SIZE, writes.size())));
+        }
+        List<WriteRequest> failed = new ArrayList<>();
+        List<CompletableFuture<Void>> lanes = new ArrayList<>(WRITE_LANES);
+        for (int lane = 0; lane < WRITE_LANES; lane++) {
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (int chunk = lane; chunk < chunks.size(); chunk += WRITE_LANES) {
+                List<WriteRequest> requests = chunks.get(chunk);
+                chain = chain.thenCompose(previous -> writeChunk(requests, 1)).thenAccept(left -> {
+                    synchronized (failed) {
+                        failed.addAll(left);
+                    }
+                });
+            }
+            lanes.add(chain);
+        }
+
+        return CompletableFuture.allOf(lanes.toArray(new CompletableFuture<?>[0])).thenCompose(done -> {
+            Set<Integer> unwritten = new TreeSet<>();
+            for (WriteRequest write : failed) {
+                Map<String, AttributeValue> item = write.putRequest().item();
+                String owner = item.containsKey("reservationId")
+                        ? DynamoItems.getString(item, "reservationId")
+                        : DynamoItems.getString(item, "id");
+                Integer index = owners.get(owner);
+                if (index != null) {
+                    unwritten.add(index);
+                }
+            }
+            return undo(batch, unwritten);
+        });
+    }
+
+    // Completes with the writes not done after the last attempt: still unprocessed, or in a call that failed.
+    // A failed call may have written some of them; undo() deletes whatever did land
+    private CompletableFuture<List<WriteRequest>> writeChunk(List<WriteRequest> requests, int attempt) {
+        BatchWriteItemRequest request = BatchWriteItemRequest.builder()
+                .requestItems(Map.of(reservationsTableName, requests))
+                .build();
+        return dynamoDb.batchWriteItem(request).handle((response, error) -> {
+            if (error != null) {
+                Log.warn("Не вдалося записати частину пакета", "count", requests.size(), Futures.unwrap(error));
+                return CompletableFuture.completedFuture(requests);
+            }
+            List<WriteRequest> unprocessed = response.unprocessedItems().get(reservationsTableName);
+            if (unprocessed == null || unprocessed.isEmpty()) {
+                return CompletableFuture.completedFuture(List.<WriteRequest>of());
+            }
+            if (attempt >= MAX_WRITE_ATTEMPTS) {
+                Log.warn("Записи пакета не оброблено після повторів", "count", unprocessed.size());
+                return CompletableFuture.completedFuture(unprocessed);
+            }
+            return after(backoff(attempt)).thenCompose(ready -> writeChunk(unprocessed, attempt + 1));
+        }).thenCompose(next -> next);
+    }
+
+    // Items whose reservation or slot locks did not all land fail as a whole, retryably: the writes that
+    // did land are deleted, then the items' bits are cleared. An item whose deletes fail keeps its bits,
+    // so the bitmap still covers every slot lock left behind
+    private CompletableFuture<Void> undo(Batch batch, Collection<Integer> unwritten) {
+        Map<Integer, CompletableFuture<Boolean>> deletes = new LinkedHashMap<>();
+        for (int index : unwritten) {
+            deletes.put(index, deleteWrites(batch.venue, batch.reservationIds[index], batch.reservations.get(index)));
+            batch.reservationIds[index] = null;
+            batch.errors[index] = "Не вдалося записати бронювання";
+            batch.retryable[index] = true;
+        }
+        return CompletableFuture.allOf(deletes.values().toArray(new CompletableFuture<?>[0])).thenCompose(done -> {
+            Map<String, List<Integer>> byDay = new LinkedHashMap<>();
+            for (Map.Entry<Integer, CompletableFuture<Boolean>> delete : deletes.entrySet()) {
+                if (delete.getValue().join()) {
+                    ReservationRequest reservation = batch.reservations.get(delete.getKey());
+                    byDay.computeIfAbsent(ReservationService.occupancyId(batch.venue, reservation.getTableNumber(), reservation.getDate()),
+                            day -> new ArrayList<>()).add(delete.getKey());
+                }
+            }
+            List<CompletableFuture<Void>> releases = new ArrayList<>(byDay.size());
+            for (List<Integer> items : byDay.values()) {
+                releases.add(release(batch, items));
+            }
+            return CompletableFuture.allOf(releases.toArray(new CompletableFuture<?>[0]));
+        });
+    }
+
+    // True when the reservation and all of its slot locks are gone; a lock is only deleted while it is still this reservation's
+    private CompletableFuture<Boolean> deleteWrites(Venue venue, String reservationId, ReservationRequest reservation) {
+        List<CompletableFuture<Boolean>> deletes = new ArrayList<>();
+        deletes.add(delete(DeleteItemRequest.builder()
+                .tableName(reservationsTableName)
+                .key(DynamoItems.key("id", reservationId))
+                .build()));
+        for (String lockId : ReservationService.slotLockIds(venue, reservation.getTableNumber(), reservation.getDate(),
+                reservation.getSlotTimeStart(), reservation.getSlotTimeEnd())) {
+            deletes.add(delete(DeleteItemRequest.builder()
+                    .tableName(reservationsTableName)
+                    .key(DynamoItems.key("id", lockId))
+                    .conditionExpression("reservationId = :reservationId")
+                    .expressionAttributeValues(Map.of(":reservationId", AttributeValue.fromS(reservationId)))
+                    .build()));
+        }
+        return CompletableFuture.allOf(deletes.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> deletes.stream().allMatch(CompletableFuture::join));
+    }
+
+    private CompletableFuture<Boolean> delete(DeleteItemRequest request) {
+        return dynamoDb.deleteItem(request).handle((deleted, error) -> {
+            Throwable cause = error != null ? Futures.unwrap(error) : null;
+            if (cause == null || cause instanceof ConditionalCheckFailedException) {
+                return true;
+            }
+            Log.warn("Не вдалося видалити запис пакета", "id", DynamoItems.getString(request.key(), "id"), cause);
+            return false;
+        });
+    }
+
+    // Clears the bits of the given items (all on one table-day) with a version-conditioned put, re-reading on conflict
+    private CompletableFuture<Void> release(Batch batch, List<Integer> items) {
+        ReservationRequest first = batch.reservations.get(items.get(0));
+        long[] mask = SlotBitmap.empty();
+        for (int index : items) {
+            ReservationRequest reservation = batch.reservations.get(index);
+            mask = SlotBitmap.union(mask, SlotBitmap.mask(ReservationService.timeToMinutes(reservation.getSlotTimeStart()),
+                    ReservationService.timeToMinutes(reservation.getSlotTimeEnd())));
+        }
+        return release(batch.venue, first.getTableNumber(), first.getDate(), mask, 1);
+    }
+
+    private CompletableFuture<Void> release(Venue venue, int tableNumber, String date, long[] mask, int attempt) {
+        String id = ReservationService.occupancyId(venue, tableNumber, date);
+        return loadItems(List.of(id)).thenCompose(stored -> {
+            Map<String, AttributeValue> occupancy = stored.get(id);
+            if (occupancy == null || !DynamoItems.has(occupancy, ReservationService.OCCUPANCY_BITS)) {
+                return CompletableFuture.completedFuture(true);
+            }
+            long[] bits = SlotBitmap.fromBytes(occupancy.get(ReservationService.OCCUPANCY_BITS).b().asByteArray());
+            return claim(venue, tableNumber, date, SlotBitmap.difference(bits, mask), DynamoItems.getLong(occupancy, "version"));
+        }).handle((released, error) -> {
+            if (error == null && !released && attempt < ReservationService.MAX_BOOKING_ATTEMPTS) {
+                return release(venue, tableNumber, date, mask, attempt + 1);
+            }
+            if (error != null || !released) {
+                Log.warn("Не вдалося звільнити слоти пакета", "day", id, error != null ? Futures.unwrap(error) : null);
+            }
+            return CompletableFuture.<Void>completedFuture(null);
+        }).thenCompose(next -> next);
+    }
+
+    private static WriteRequest put(Map<String, AttributeValue> item) {
+        return WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build();
+    }
+
+    // Exponential backoff with full jitter
+    private static long backoff(int attempt) {
+        return ThreadLocalRandom.current().nextLong(BASE_BACKOFF_MILLIS << (attempt - 1));
+    }
+
+    private static CompletableFuture<Void> after(long delayMillis) {
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    // Per-item outcome, filled in as the batch goes through the stages
+    static class Batch {
+        private final Venue venue;
+        private final List<ReservationRequest> reservations;
+        private final String[] assignedIds;
+        private final String[] errors;
+        private final String[] reservationIds;
+        // Failures of the moment (contention, throttled writes) rather than of the reservation itself
+        private final boolean[] retryable;
+        private final boolean[] overlapping;
+
+        Batch(Venue venue, List<ReservationRequest> reservations, String[] assignedIds) {
+            this.venue = venue;
+            this.reservations = reservations;
+            this.assignedIds = assignedIds;
+            this.errors = new String[reservations.size()];
+            this.reservationIds = new String[reservations.size()];
+            this.retryable = new boolean[reservations.size()];
+            this.overlapping = new boolean[reservations.size()];
+        }
+
+        int size() {
+            return reservations.size();
+        }
+
+        boolean isBooked(int index) {
+            return reservationIds[index] != null;
+        }
+
+        String error(int index) {
+            return errors[index];
+        }
+
+        boolean isRetryable(int index) {
+            return retryable[index];
+        }
+
+        ApiResponse toResponse() {
+            int created = 0;
+            List<Map<String, Object>> results = new ArrayList<>(size());
+            for (int i = 0; i < size(); i++) {
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("index", i);
+                if (reservationIds[i] != null) {
+                    result.put("reservationId", reservationIds[i]);
+                    created++;
+                } else {
+                    result.put("error", errors[i]);
+                }
+                results.add(result);
+            }
+            Map<String, Object> responseBody = new LinkedHashMap<>();
+            responseBody.put("created", created);
+            responseBody.put("rejected", size() - created);
+            responseBody.put("results", results);
+            return ResponseUtil.createResponse(200, responseBody);
+        }
+    }
+}
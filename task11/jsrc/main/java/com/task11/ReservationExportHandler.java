@@ -0,0 +1,102 @@
+package com.task11;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.ScheduledEvent;
+import com.syndicate.deployment.annotations.environment.EnvironmentVariable;
+import com.syndicate.deployment.annotations.environment.EnvironmentVariables;
+import com.syndicate.deployment.annotations.events.RuleEventSource;
+import com.syndicate.deployment.annotations.lambda.LambdaHandler;
+import com.syndicate.deployment.annotations.resources.DependsOn;
+import com.syndicate.deployment.model.ResourceType;
+import com.syndicate.deployment.model.RetentionSetting;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
+
+@LambdaHandler(
+        lambdaName = "reservation_exporter",
+        roleName = "reservation_exporter-role",
+        isPublishVersion = true,
+        aliasName = "${lambdas_alias_name}",
+        logsExpiration = RetentionSetting.SYNDICATE_ALIASES_SPECIFIED
+)
+@RuleEventSource(targetRule = "reservations_export_trigger")
+@DependsOn(name = "reservations_export_trigger", resourceType = ResourceType.CLOUDWATCH_RULE)
+@DependsOn(resourceType = ResourceType.DYNAMODB_TABLE, name = "${reservations_table}")
+@DependsOn(resourceType = ResourceType.S3_BUCKET, name = "${export_bucket}")
+@EnvironmentVariables(value = {
+        @EnvironmentVariable(key = "REGION", value = "${region}"),
+        @EnvironmentVariable(key = "RESERVATIONS_TABLE", value = "${reservations_table}"),
+        @EnvironmentVariable(key = "EXPORT_BUCKET", value = "${export_bucket}"),
+        @EnvironmentVariable(key = "EXPORT_SEGMENTS", value = "4")
+})
+public class ReservationExportHandler implements RequestHandler<ScheduledEvent, String> {
+
+    // Сегменти сканують власні потоки, тож тут достатньо синхронних клієнтів
+    private static final DynamoDbClient dynamoDb = DynamoDbClient.builder()
+            .region(Region.of(System.getenv("REGION")))
+            .credentialsProvider(ApiHandler.credentialsProvider())
+            .build();
+    private static final S3Client s3Client = S3Client.builder()
+            .region(Region.of(System.getenv("REGION")))
+            .credentialsProvider(ApiHandler.credentialsProvider())
+            .build();
+
+    @Override
+    public String handleRequest(ScheduledEvent event, Context context) {
+        Log.beginInvocation(context.getAwsRequestId());
+        String bucket = System.getenv("EXPORT_BUCKET");
+        String key = "reservations/" + Instant.now() + ".ndjson.gz";
+        int segments = Integer.parseInt(System.getenv().getOrDefault("EXPORT_SEGMENTS", "4"));
+
+        String location = "s3://" + bucket + "/" + key;
+        ParallelScanExporter exporter = new ParallelScanExporter(
+                ParallelScanExporter.reservationsScanner(dynamoDb, System.getenv("RESERVATIONS_TABLE")),
+                segments);
+        Log.debug("Експорт бронювань розпочато", "segments", segments, "location", location);
+
+        Path file = null;
+        try {
+            // Стрімимо у gzip-файл у /tmp, щоб не тримати експорт у пам'яті, і вже файл віддаємо в S3
+            file = Files.createTempFile("reservations", ".ndjson.gz");
+            long started = System.nanoTime();
+            long exported;
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file)), 64 * 1024)) {
+                exported = exporter.export(out);
+            }
+            Log.info("Бронювання проскановано", "exported", exported, "ms", (System.nanoTime() - started) / 1_000_000);
+
+            s3Client.putObject(PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build(), RequestBody.fromFile(file));
+            Log.info("Експорт завантажено", "location", location, "bytes", Files.size(file));
+            return "SUCCESS";
+        } catch (IOException e) {
+            // Помилка має дійти до Lambda: тоді спрацюють повтори й алерти запланованого виклику
+            Log.error("Експорт не вдався", "location", location, e);
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.error("Експорт перервано", "location", location, e);
+            throw new IllegalStateException("Export interrupted", e);
+        } finally {
+            if (file != null) {
+                file.toFile().delete();
+            }
+            Log.flush();
+        }
+    }
+}
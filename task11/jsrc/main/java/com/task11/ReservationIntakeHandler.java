@@ -0,0 +1,239 @@
+package com.task11;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.syndicate.deployment.annotations.environment.EnvironmentVariable;
+import com.syndicate.deployment.annotations.environment.EnvironmentVariables;
+import com.syndicate.deployment.annotations.events.SqsTriggerEventSource;
+import com.syndicate.deployment.annotations.lambda.LambdaHandler;
+import com.syndicate.deployment.annotations.resources.DependsOn;
+import com.syndicate.deployment.model.ResourceType;
+import com.syndicate.deployment.model.RetentionSetting;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+@LambdaHandler(
+        lambdaName = "reservation_intake",
+        roleName = "reservation_intake-role",
+        isPublishVersion = true,
+        aliasName = "${lambdas_alias_name}",
+        logsExpiration = RetentionSetting.SYNDICATE_ALIASES_SPECIFIED
+)
+@SqsTriggerEventSource(
+        targetQueue = "reservation_intake_queue",
+        batchSize = 10
+)
+@DependsOn(name = "reservation_intake_queue", resourceType = ResourceType.SQS_QUEUE)
+@DependsOn(resourceType = ResourceType.DYNAMODB_TABLE, name = "${tables_table}")
+@DependsOn(resourceType = ResourceType.DYNAMODB_TABLE, name = "${reservations_table}")
+@EnvironmentVariables(value = {
+        @EnvironmentVariable(key = "REGION", value = "${region}"),
+        @EnvironmentVariable(key = "TABLES_TABLE", value = "${tables_table}"),
+        @EnvironmentVariable(key = "RESERVATIONS_TABLE", value = "${reservations_table}"),
+        @EnvironmentVariable(key = "TABLE_CATALOG_TTL_SECONDS", value = "10"),
+        // Мають збігатися з api_handler: від них залежать ключі бронювань
+        @EnvironmentVariable(key = "DEFAULT_VENUE", value = "main"),
+        @EnvironmentVariable(key = "VENUE_SHARDS", value = "main=1"),
+        @EnvironmentVariable(key = "INTAKE_STATUS_TTL_SECONDS", value = "604800"),
+        // Менше за maxReceiveCount черги: відмову встигаємо записати до того, як повідомлення піде в DLQ
+        @EnvironmentVariable(key = "INTAKE_MAX_RECEIVES", value = "5"),
+        @EnvironmentVariable(key = "LOG_LEVEL", value = "INFO")
+})
+public class ReservationIntakeHandler implements RequestHandler<SQSEvent, Map<String, Object>> {
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String reservationsTableName;
+    private final ReservationBatchService batchService;
+    private final long statusTtlMillis;
+    private final int maxReceives;
+
+    public ReservationIntakeHandler() {
+        this(DynamoDbAsyncClient.builder()
+                .region(Region.of(System.getenv("REGION")))
+                .credentialsProvider(ApiHandler.credentialsProvider())
+                .build());
+    }
+
+    // Table names and settings come from the environment, or system properties of the same name (see the local harness)
+    ReservationIntakeHandler(DynamoDbAsyncClient dynamoDb) {
+        this.dynamoDb = dynamoDb;
+        this.reservationsTableName = ApiHandler.setting("RESERVATIONS_TABLE");
+        String catalogTtl = ApiHandler.setting("TABLE_CATALOG_TTL_SECONDS");
+        TableCatalogs tableCatalogs = new TableCatalogs(dynamoDb, ApiHandler.setting("TABLES_TABLE"),
+                Long.parseLong(catalogTtl != null ? catalogTtl : "10") * 1000);
+        this.batchService = new ReservationBatchService(dynamoDb, reservationsTableName, tableCatalogs);
+        String statusTtl = ApiHandler.setting("INTAKE_STATUS_TTL_SECONDS");
+        this.statusTtlMillis = Long.parseLong(statusTtl != null ? statusTtl : "604800") * 1000;
+        String maxReceives = ApiHandler.setting("INTAKE_MAX_RECEIVES");
+        this.maxReceives = Integer.parseInt(maxReceives != null ? maxReceives : "5");
+    }
+
+    // Books the queued requests of one delivery like a batch: grouped by venue, each table-day bitmap is
+    // read and claimed once. Rejections are recorded for the status route. When something failed only for
+    // the moment, the whole delivery fails and SQS redelivers it. A request counts as settled on an earlier
+    // delivery when its rejection exists, or its reservation and every one of its slot locks do; those are
+    // skipped, so a redelivery never books twice. A request written only in part still holds its bits
+    // (an undo keeps them until all of its writes are gone), so its writes are finished instead. A request
+    // still failing on its INTAKE_MAX_RECEIVES-th delivery is rejected, so the status route can answer
+    @Override
+    public Map<String, Object> handleRequest(SQSEvent event, Context context) {
+        Log.beginInvocation(context.getAwsRequestId());
+        try {
+            return process(event.getRecords());
+        } finally {
+            Log.flush();
+        }
+    }
+
+    Map<String, Object> process(List<SQSEvent.SQSMessage> messages) {
+        Map<String, QueuedReservation> queued = new LinkedHashMap<>();
+        Map<String, Integer> receives = new HashMap<>();
+        for (SQSEvent.SQSMessage message : messages) {
+            try {
+                QueuedReservation reservation = RequestBodies.QUEUED_RESERVATION.readValue(message.getBody());
+                if (reservation.getReservationId() == null || reservation.getReservation() == null) {
+                    throw new IOException("no reservation id");
+                }
+                queued.put(reservation.getReservationId(), reservation);
+                receives.put(reservation.getReservationId(), receiveCount(message));
+            } catch (IOException e) {
+                // Повтор не виправить такого повідомлення: лише фіксуємо його
+                Log.warn("Пропущено нечитабельне повідомлення черги", "messageId", message.getMessageId(), e);
+            }
+        }
+
+        Map<String, List<String>> lockIds = new HashMap<>();
+        Set<String> ids = new LinkedHashSet<>();
+        for (QueuedReservation reservation : queued.values()) {
+            String reservationId = reservation.getReservationId();
+            ids.add(reservationId);
+            ids.add(ReservationService.INTAKE_PREFIX + reservationId);
+            ReservationRequest request = reservation.getReservation();
+            if (ValidationUtil.validateReservation(request) == null) {
+                List<String> locks = ReservationService.slotLockIds(Venue.resolve(reservation.getVenue()), request.getTableNumber(),
+                        request.getDate(), request.getSlotTimeStart(), request.getSlotTimeEnd());
+                lockIds.put(reservationId, locks);
+                ids.addAll(locks);
+            }
+        }
+        Map<String, Map<String, AttributeValue>> stored = batchService.loadItems(ids).join();
+
+        Map<String, List<QueuedReservation>> byVenue = new LinkedHashMap<>();
+        Map<String, List<QueuedReservation>> unfinished = new LinkedHashMap<>();
+        for (QueuedReservation reservation : queued.values()) {
+            String reservationId = reservation.getReservationId();
+            if (stored.containsKey(ReservationService.INTAKE_PREFIX + reservationId)) {
+                continue;
+            }
+            List<String> locks = lockIds.getOrDefault(reservationId, List.of());
+            int owned = 0;
+            for (String lockId : locks) {
+                Map<String, AttributeValue> lock = stored.get(lockId);
+                if (lock != null && reservationId.equals(DynamoItems.getString(lock, "reservationId"))) {
+                    owned++;
+                }
+            }
+            boolean written = stored.containsKey(reservationId);
+            if (written && owned == locks.size()) {
+                continue;
+            }
+            (written || owned > 0 ? unfinished : byVenue)
+                    .computeIfAbsent(reservation.getVenue(), venue -> new ArrayList<>()).add(reservation);
+        }
+
+        List<String[]> groupIds = new ArrayList<>();
+        List<ReservationBatchService.Batch> outcomes = new ArrayList<>();
+        for (Map.Entry<String, List<QueuedReservation>> group : unfinished.entrySet()) {
+            String[] reservationIds = reservationIds(group.getValue());
+            groupIds.add(reservationIds);
+            outcomes.add(batchService.finishReservations(
+                    Venue.resolve(group.getKey()), requests(group.getValue()), reservationIds).join());
+        }
+        for (Map.Entry<String, List<QueuedReservation>> group : byVenue.entrySet()) {
+            String[] reservationIds = reservationIds(group.getValue());
+            groupIds.add(reservationIds);
+            outcomes.add(batchService.applyReservations(
+                    Venue.resolve(group.getKey()), requests(group.getValue()), reservationIds).join());
+        }
+
+        int booked = 0;
+        int rejected = 0;
+        int retryable = 0;
+        List<CompletableFuture<?>> rejections = new ArrayList<>();
+        for (int group = 0; group < outcomes.size(); group++) {
+            ReservationBatchService.Batch outcome = outcomes.get(group);
+            for (int i = 0; i < outcome.size(); i++) {
+                String reservationId = groupIds.get(group)[i];
+                if (outcome.isBooked(i)) {
+                    booked++;
+                } else if (outcome.isRetryable(i) && receives.get(reservationId) < maxReceives) {
+                    retryable++;
+                } else {
+                    // Після останньої дозволеної доставки відмова остаточна: статус більше не лишається "pending"
+                    if (outcome.isRetryable(i)) {
+                        Log.log(Log.Level.WARN, "Бронювання не вдалося за всі доставки",
+                                "reservationId", reservationId, "receives", receives.get(reservationId));
+                    }
+                    rejected++;
+                    rejections.add(reject(reservationId, outcome.error(i)));
+                }
+            }
+        }
+        CompletableFuture.allOf(rejections.toArray(new CompletableFuture<?>[0])).join();
+
+        Log.info("Оброблено чергу бронювань", "booked", booked, "rejected", rejected);
+        if (retryable > 0) {
+            throw new IllegalStateException("Бронювань до повтору: " + retryable);
+        }
+
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("booked", booked);
+        resultMap.put("rejected", rejected);
+        resultMap.put("skipped", messages.size() - booked - rejected);
+        return resultMap;
+    }
+
+    // SQS counts the deliveries of a message; absent outside SQS (a hand-made event), counted as the first
+    private static int receiveCount(SQSEvent.SQSMessage message) {
+        String count = message.getAttributes() != null ? message.getAttributes().get("ApproximateReceiveCount") : null;
+        return count != null ? Integer.parseInt(count) : 1;
+    }
+
+    private static List<ReservationRequest> requests(List<QueuedReservation> reservations) {
+        List<ReservationRequest> requests = new ArrayList<>(reservations.size());
+        for (QueuedReservation reservation : reservations) {
+            requests.add(reservation.getReservation());
+        }
+        return requests;
+    }
+
+    private static String[] reservationIds(List<QueuedReservation> reservations) {
+        String[] reservationIds = new String[reservations.size()];
+        for (int i = 0; i < reservations.size(); i++) {
+            reservationIds[i] = reservations.get(i).getReservationId();
+        }
+        return reservationIds;
+    }
+
+    // The status route reads this record; it expires through the table's TTL like idempotency records
+    private CompletableFuture<?> reject(String reservationId, String reason) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("id", AttributeValue.fromS(ReservationService.INTAKE_PREFIX + reservationId));
+        item.put("reason", AttributeValue.fromS(reason));
+        item.put(IdempotencyStore.EXPIRES_AT, DynamoItems.number((System.currentTimeMillis() + statusTtlMillis) / 1000));
+        return dynamoDb.putItem(PutItemRequest.builder().tableName(reservationsTableName).item(item).build());
+    }
+}
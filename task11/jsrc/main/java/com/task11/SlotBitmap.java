@@ -0,0 +1,72 @@
+package com.task11;
+
+import java.nio.ByteBuffer;
+
+// Occupancy of one table for one day: bit i is set when quantum i (SLOT_QUANTUM_MINUTES long) is booked.
+// Stored as a binary attribute of big-endian longs, so a whole day costs a couple of words
+// and an availability check is a few ANDs.
+final class SlotBitmap {
+    static final int QUANTA_PER_DAY = 24 * 60 / ReservationService.SLOT_QUANTUM_MINUTES;
+    static final int WORDS = (QUANTA_PER_DAY + 63) / 64;
+
+    private SlotBitmap() {
+    }
+
+    static long[] empty() {
+        return new long[WORDS];
+    }
+
+    // Quanta touched by [startMinutes, endMinutes); same rounding as the slot locks
+    static long[] mask(int startMinutes, int endMinutes) {
+        long[] bits = empty();
+        int first = startMinutes / ReservationService.SLOT_QUANTUM_MINUTES;
+        int last = (endMinutes - 1) / ReservationService.SLOT_QUANTUM_MINUTES;
+        for (int quantum = first; quantum <= last; quantum++) {
+            bits[quantum >>> 6] |= 1L << (quantum & 63);
+        }
+        return bits;
+    }
+
+    static boolean intersects(long[] a, long[] b) {
+        for (int i = 0; i < WORDS; i++) {
+            if ((a[i] & b[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static long[] union(long[] a, long[] b) {
+        long[] bits = empty();
+        for (int i = 0; i < WORDS; i++) {
+            bits[i] = a[i] | b[i];
+        }
+        return bits;
+    }
+
+    static long[] difference(long[] a, long[] b) {
+        long[] bits = empty();
+        for (int i = 0; i < WORDS; i++) {
+            bits[i] = a[i] & ~b[i];
+        }
+        return bits;
+    }
+
+    static byte[] toBytes(long[] bits) {
+        ByteBuffer buffer = ByteBuffer.allocate(WORDS * Long.BYTES);
+        for (long word : bits) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    // Missing trailing words read as free quanta
+    static long[] fromBytes(byte[] bytes) {
+        long[] bits = empty();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int i = 0; i < WORDS && buffer.remaining() >= Long.BYTES; i++) {
+            bits[i] = buffer.getLong();
+        }
+        return bits;
+    }
+}
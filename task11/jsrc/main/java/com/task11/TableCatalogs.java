@@ -0,0 +1,34 @@
+package com.task11;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// One catalogue per venue, created when the venue is first asked for
+class TableCatalogs {
+    private static final int MAX_CATALOGS = 1024;
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String tablesTableName;
+    private final long ttlMillis;
+    private final Map<String, TableCatalog> catalogs = new ConcurrentHashMap<>();
+
+    public TableCatalogs(DynamoDbAsyncClient dynamoDb, String tablesTableName, long ttlMillis) {
+        this.dynamoDb = dynamoDb;
+        this.tablesTableName = tablesTableName;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public TableCatalog of(Venue venue) {
+        TableCatalog catalog = catalogs.get(venue.id());
+        if (catalog != null) {
+            return catalog;
+        }
+        // Заклад береться із заголовка запиту, тож кількість кешованих каталогів обмежена
+        if (catalogs.size() >= MAX_CATALOGS) {
+            return new TableCatalog(dynamoDb, tablesTableName, venue, ttlMillis);
+        }
+        return catalogs.computeIfAbsent(venue.id(), id -> new TableCatalog(dynamoDb, tablesTableName, venue, ttlMillis));
+    }
+}
@@ -0,0 +1,69 @@
+package com.task11;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Immutable table row with its pre-rendered response view
+class TableRecord {
+    private final int id;
+    private final int number;
+    private final int places;
+    private final boolean isVip;
+    private final Integer minOrder;
+    private final Map<String, Object> view;
+
+    TableRecord(int id, int number, int places, boolean isVip, Integer minOrder) {
+        this.id = id;
+        this.number = number;
+        this.places = places;
+        this.isVip = isVip;
+        this.minOrder = minOrder;
+
+        Map<String, Object> tableData = new LinkedHashMap<>();
+        tableData.put("id", id);
+        tableData.put("number", number);
+        tableData.put("places", places);
+        tableData.put("isVip", isVip);
+        if (minOrder != null) {
+            tableData.put("minOrder", minOrder);
+        }
+        this.view = Collections.unmodifiableMap(tableData);
+    }
+
+    static TableRecord fromItem(Map<String, AttributeValue> item) {
+        return new TableRecord(
+                Venue.tableIdOf(DynamoItems.getString(item, "id")),
+                DynamoItems.getInt(item, "number"),
+                DynamoItems.getInt(item, "places"),
+                DynamoItems.getBoolean(item, "isVip"),
+                DynamoItems.has(item, "minOrder") ? DynamoItems.getInt(item, "minOrder") : null
+        );
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public int getPlaces() {
+        return places;
+    }
+
+    public boolean isVip() {
+        return isVip;
+    }
+
+    public Integer getMinOrder() {
+        return minOrder;
+    }
+
+    public Map<String, Object> getView() {
+        return view;
+    }
+}
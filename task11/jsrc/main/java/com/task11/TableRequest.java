@@ -0,0 +1,49 @@
+package com.task11;
+
+class TableRequest {
+    private Integer id;
+    private Integer number;
+    private Integer places;
+    private Boolean isVip;
+    private Integer minOrder;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getNumber() {
+        return number;
+    }
+
+    public void setNumber(Integer number) {
+        this.number = number;
+    }
+
+    public Integer getPlaces() {
+        return places;
+    }
+
+    public void setPlaces(Integer places) {
+        this.places = places;
+    }
+
+    public Boolean getIsVip() {
+        return isVip;
+    }
+
+    public void setIsVip(Boolean isVip) {
+        this.isVip = isVip;
+    }
+
+    public Integer getMinOrder() {
+        return minOrder;
+    }
+
+    public void setMinOrder(Integer minOrder) {
+        this.minOrder = minOrder;
+    }
+}
@@ -0,0 +1,51 @@
+package com.task11;
+
+import java.util.regex.Pattern;
+
+// Validation Utility
+class ValidationUtil {
+    private static final Pattern DATE = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}$");
+    private static final Pattern TIME = Pattern.compile("^([01]?\\d|2[0-3]):[0-5]\\d$");
+
+    public static boolean isValidEmail(String email) {
+        return email != null && email.matches("^[A-Za-z0-9+_.-]+@(.+)$");
+    }
+
+    public static boolean isValidPassword(String password) {
+        return password != null && password.length() >= 12 &&
+                password.matches("^(?=.*[a-z])(?=.*[A-Z])(?=.*\\d)(?=.*[$%^*-_])[A-Za-z\\d$%^*-_]+$");
+    }
+
+    // Returns the first problem with the availability window, or null when it is valid
+    public static String validateAvailability(String date, String from, String to) {
+        if (date == null || !DATE.matcher(date).matches()) {
+            return "Параметр 'date' має бути у форматі yyyy-MM-dd";
+        }
+        if (from == null || !TIME.matcher(from).matches() || to == null || !TIME.matcher(to).matches()) {
+            return "Параметри 'from' і 'to' мають бути у форматі HH:mm";
+        }
+        if (ReservationService.timeToMinutes(from) >= ReservationService.timeToMinutes(to)) {
+            return "'from' має бути раніше за 'to'";
+        }
+        return null;
+    }
+
+    // Returns the first problem with the reservation, or null when it is valid
+    public static String validateReservation(ReservationRequest reservation) {
+        if (reservation.getTableNumber() == null) {
+            return "Поле 'tableNumber' є обов'язковим";
+        }
+        if (reservation.getDate() == null || !DATE.matcher(reservation.getDate()).matches()) {
+            return "Поле 'date' має бути у форматі yyyy-MM-dd";
+        }
+        if (reservation.getSlotTimeStart() == null || !TIME.matcher(reservation.getSlotTimeStart()).matches()
+                || reservation.getSlotTimeEnd() == null || !TIME.matcher(reservation.getSlotTimeEnd()).matches()) {
+            return "Поля 'slotTimeStart' і 'slotTimeEnd' мають бути у форматі HH:mm";
+        }
+        if (ReservationService.timeToMinutes(reservation.getSlotTimeStart())
+                >= ReservationService.timeToMinutes(reservation.getSlotTimeEnd())) {
+            return "'slotTimeStart' має бути раніше за 'slotTimeEnd'";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,93 @@
+package com.task12;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Per-client admission control in front of the routes. Every client gets a token bucket of `burst`
+// requests refilled at `ratePerSecond`; requests over it are refused with 429. Clients are the source IP
+// before any route runs, and the verified user once a protected route has checked the token.
+// A bucket is a GCRA cell: one "theoretical arrival time" per client, advanced by CAS, so admission
+// takes no lock. Cells live in a fixed striped array instead of a map keyed by client, so memory does
+// not grow with the number of clients; clients whose keys land on the same stripe share a bucket.
+// Limits hold per container: with N warm containers a client gets up to N times the rate.
+final class AdmissionControl {
+    private static final int STRIPES = 4096;
+    // Cells are spread one cache line apart, so that threads admitting different clients don't contend
+    private static final int CELL_SPACING = 8;
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private volatile long origin = System.nanoTime();
+    private final AtomicLongArray arrivals;
+
+    private AdmissionControl(double ratePerSecond, int burst) {
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.toleranceNanos = (Math.max(burst, 1) - 1) * intervalNanos;
+        this.arrivals = new AtomicLongArray(STRIPES * CELL_SPACING);
+    }
+
+    // null when the rate is not set or not positive: admission control is off
+    static AdmissionControl create(String ratePerSecond, String burst) {
+        double rate = ratePerSecond != null ? Double.parseDouble(ratePerSecond) : 0;
+        if (rate <= 0) {
+            return null;
+        }
+        return new AdmissionControl(rate, burst != null ? Integer.parseInt(burst) : (int) Math.ceil(rate));
+    }
+
+    // 0 when the request is admitted, otherwise the nanoseconds until this client may send the next one
+    long admit(String clientKey) {
+        int cell = stripe(clientKey) * CELL_SPACING;
+        // Час рахуємо від створення: нульова комірка означає повний бакет
+        long now = System.nanoTime() - origin;
+        while (true) {
+            long arrival = arrivals.get(cell);
+            long next = Math.max(arrival, now) + intervalNanos;
+            long wait = next - now - toleranceNanos - intervalNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrivals.compareAndSet(cell, arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // System.nanoTime() has no fixed origin: in a JVM restored from a snapshot it counts from a new base,
+    // and cells written before the checkpoint would refuse or wave through everyone. Starts over with full buckets
+    void restart() {
+        for (int i = 0; i < arrivals.length(); i++) {
+            arrivals.set(i, 0);
+        }
+        origin = System.nanoTime();
+    }
+
+    // The caller's IP as API Gateway saw it, the key before routing. Nothing the client sends picks the
+    // bucket: X-Api-Key is not required by the API and the token is not verified yet, so either could be
+    // changed on every request to get a fresh bucket. Authenticated routes admit the verified user as well
+    @SuppressWarnings("unchecked")
+    static String clientKey(Map<String, Object> request) {
+        Object requestContext = request.get("requestContext");
+        if (requestContext instanceof Map) {
+            Object identity = ((Map<String, Object>) requestContext).get("identity");
+            if (identity instanceof Map) {
+                Object sourceIp = ((Map<String, Object>) identity).get("sourceIp");
+                if (sourceIp != null) {
+                    return "ip:" + sourceIp;
+                }
+            }
+        }
+        return "anonymous";
+    }
+
+    // Key of a user whose token JwtVerifier accepted
+    static String userKey(VerifiedToken principal) {
+        return "sub:" + principal.getSubject();
+    }
+
+    private static int stripe(String clientKey) {
+        int hash = clientKey.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -1,38 +1,54 @@
 package com.task12;
 
-import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
-import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProviderClientBuilder;
-import com.amazonaws.services.cognitoidp.model.AdminCreateUserRequest;
-import com.amazonaws.services.cognitoidp.model.AdminInitiateAuthRequest;
-import com.amazonaws.services.cognitoidp.model.AdminInitiateAuthResult;
-import com.amazonaws.services.cognitoidp.model.AdminSetUserPasswordRequest;
-import com.amazonaws.services.cognitoidp.model.AttributeType;
-import com.amazonaws.services.cognitoidp.model.AuthFlowType;
-import com.amazonaws.services.cognitoidp.model.UsernameExistsException;
-import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
-import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
-import com.amazonaws.services.dynamodbv2.document.DynamoDB;
-import com.amazonaws.services.dynamodbv2.document.Item;
-import com.amazonaws.services.dynamodbv2.document.Table;
-import com.amazonaws.services.dynamodbv2.document.spec.GetItemSpec;
 import com.amazonaws.services.lambda.runtime.Context;
-import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.syndicate.deployment.annotations.environment.EnvironmentVariable;
 import com.syndicate.deployment.annotations.environment.EnvironmentVariables;
 import com.syndicate.deployment.annotations.lambda.LambdaHandler;
 import com.syndicate.deployment.annotations.resources.DependsOn;
 import com.syndicate.deployment.model.ResourceType;
 import com.syndicate.deployment.model.RetentionSetting;
-
+import com.syndicate.deployment.model.lambda.LambdaSnapStart;
+import org.crac.Core;
+import org.crac.Resource;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.ContainerCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderAsyncClient;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminInitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AttributeType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AuthFlowType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.DescribeUserPoolRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.MessageActionType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UsernameExistsException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 import static com.syndicate.deployment.model.environment.ValueTransformer.USER_POOL_NAME_TO_CLIENT_ID;
 import static com.syndicate.deployment.model.environment.ValueTransformer.USER_POOL_NAME_TO_USER_POOL_ID;
@@ -42,126 +58,338 @@ import static com.syndicate.deployment.model.environment.ValueTransformer.USER_P
         roleName = "api_handler-role",
         isPublishVersion = true,
         aliasName = "${lambdas_alias_name}",
-        logsExpiration = RetentionSetting.SYNDICATE_ALIASES_SPECIFIED
+        logsExpiration = RetentionSetting.SYNDICATE_ALIASES_SPECIFIED,
+        snapStart = LambdaSnapStart.PublishedVersions
 )
 @DependsOn(resourceType = ResourceType.COGNITO_USER_POOL, name = "${booking_userpool}")
 @DependsOn(resourceType = ResourceType.DYNAMODB_TABLE, name = "${tables_table}")
 @DependsOn(resourceType = ResourceType.DYNAMODB_TABLE, name = "${reservations_table}")
+@DependsOn(resourceType = ResourceType.SQS_QUEUE, name = "reservation_intake_queue")
 @EnvironmentVariables(value = {
         @EnvironmentVariable(key = "REGION", value = "${region}"),
         @EnvironmentVariable(key = "COGNITO_ID", value = "${booking_userpool}", valueTransformer = USER_POOL_NAME_TO_USER_POOL_ID),
         @EnvironmentVariable(key = "CLIENT_ID", value = "${booking_userpool}", valueTransformer = USER_POOL_NAME_TO_CLIENT_ID),
         @EnvironmentVariable(key = "TABLES_TABLE", value = "${tables_table}"),
-        @EnvironmentVariable(key = "RESERVATIONS_TABLE", value = "${reservations_table}")
+        @EnvironmentVariable(key = "RESERVATIONS_TABLE", value = "${reservations_table}"),
+        @EnvironmentVariable(key = "TABLE_CATALOG_TTL_SECONDS", value = "10"),
+        @EnvironmentVariable(key = "DEFAULT_VENUE", value = "main"),
+        @EnvironmentVariable(key = "VENUE_SHARDS", value = "main=1"),
+        @EnvironmentVariable(key = "IDEMPOTENCY_TTL_SECONDS", value = "86400"),
+        @EnvironmentVariable(key = "IDEMPOTENCY_CACHE_SIZE", value = "1000"),
+        @EnvironmentVariable(key = "ASYNC_RESERVATIONS", value = "false"),
+        @EnvironmentVariable(key = "RESERVATION_QUEUE", value = "reservation_intake_queue"),
+        @EnvironmentVariable(key = "ADMISSION_RATE_PER_SECOND", value = "20"),
+        @EnvironmentVariable(key = "ADMISSION_BURST", value = "40"),
+        @EnvironmentVariable(key = "PRIME_ON_INIT", value = "true"),
+        @EnvironmentVariable(key = "LOG_LEVEL", value = "INFO"),
+        @EnvironmentVariable(key = "LOG_DEBUG_SAMPLE_RATE", value = "0.01")
 })
-public class ApiHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+public class ApiHandler implements RequestStreamHandler {
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
-    private final Map<String, RouteHandler> handlers = new HashMap<>();
-
-    private AWSCognitoIdentityProvider cognitoClient;
-    private DynamoDB dynamoDB;
+    private static final ObjectReader requestReader = objectMapper.readerFor(Map.class);
+    private static final Map<String, RouteHandler> handlers = new HashMap<>();
+    private static final AdmissionControl admission =
+            AdmissionControl.create(setting("ADMISSION_RATE_PER_SECOND"), setting("ADMISSION_BURST"));
+
+    private static CognitoIdentityProviderAsyncClient cognitoClient;
+    private static DynamoDbAsyncClient dynamoDb;
+    private static SqsAsyncClient sqsClient;
+    private static TableCatalogs tableCatalogs;
+    private static JwtVerifier jwtVerifier;
+
+    // Lambda creates the handler once, in the init phase: clients, routes and priming are paid there, before
+    // the first request and before a SnapStart snapshot. The other functions of this jar only use static
+    // helpers of this class, so they build no booking clients and register no hooks
+    public ApiHandler() {
+        Services.initialize();
+        CheckpointHooks.register();
+    }
 
     @Override
-    public Map<String, Object> handleRequest(Map<String, Object> request, Context context) {
-        // Логування змінних середовища для перевірки
-        context.getLogger().log("REGION: " + System.getenv("REGION"));
-        context.getLogger().log("COGNITO_ID: " + System.getenv("COGNITO_ID"));
-        context.getLogger().log("CLIENT_ID: " + System.getenv("CLIENT_ID"));
-        context.getLogger().log("tablesTable: " + System.getenv("tablesTable"));
-        context.getLogger().log("reservationsTable: " + System.getenv("reservationsTable"));
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        long start = System.nanoTime();
+        Log.beginInvocation(context.getAwsRequestId());
+        Map<String, Object> request = requestReader.readValue(input);
+
+        // Preflight має сталу відповідь: її віддаємо одразу, не торкаючись клієнтів і маршрутів
+        if ("OPTIONS".equals(request.get("httpMethod"))) {
+            ResponseUtil.writePreflight(output);
+            Log.flush();
+            return;
+        }
 
-        // Ініціалізація сервісів
-        initializeServices();
+        // Адреса понад свій ліміт отримує 429 ще до маршрутизації: без жодного звернення до DynamoDB
+        if (admission != null) {
+            long waitNanos = admission.admit(AdmissionControl.clientKey(request));
+            if (waitNanos > 0) {
+                ResponseUtil.write(ResponseUtil.tooManyRequests(waitNanos), output);
+                Log.debug("Запит відхилено лімітом", "route", request.get("resource") + ":" + request.get("httpMethod"));
+                Log.flush();
+                return;
+            }
+        }
 
-        // Ініціалізація обробників
-        initializeHandlers(context);
+        String route = request.get("resource") + ":" + request.get("httpMethod");
+        ApiResponse response = dispatch(route, request, context);
+        ResponseUtil.write(response, output);
 
-        try {
-            String resource = (String) request.get("resource");
-            String httpMethod = (String) request.get("httpMethod");
+        // Читання — найчастіші маршрути: їхній рядок доступу йде на DEBUG і видно лише семпл
+        Log.Level accessLevel = "GET".equals(request.get("httpMethod")) ? Log.Level.DEBUG : Log.Level.INFO;
+        if (Log.isEnabled(accessLevel)) {
+            Log.log(accessLevel, "Запит оброблено", "route", route, "micros", (System.nanoTime() - start) / 1_000);
+        }
+        Log.flush();
+    }
+
+    // Swaps in other client implementations (the in-memory stand-ins of the local harness) and rebuilds the routes.
+    // Table and pool names come from the same environment variables, or system properties of the same name.
+    static synchronized void install(CognitoIdentityProviderAsyncClient cognito, DynamoDbAsyncClient dynamo,
+                                     SqsAsyncClient sqs, JwtVerifier verifier) {
+        Services.initialize();
+        cognitoClient = cognito;
+        dynamoDb = dynamo;
+        sqsClient = sqs;
+        handlers.clear();
+        initializeHandlers(verifier);
+    }
 
+    private static ApiResponse dispatch(String route, Map<String, Object> request, Context context) {
+        try {
             // Створення контексту запиту
             ApiRequestContext requestContext = new ApiRequestContext(
                     request,
-                    parseBody((String) request.get("body")),
+                    (String) request.get("body"),
                     (Map<String, String>) request.get("pathParameters"),
                     (Map<String, String>) request.get("headers"),
+                    (Map<String, String>) request.get("queryStringParameters"),
                     context
             );
 
             // Пошук і виконання відповідного обробника
-            String handlerKey = resource + ":" + httpMethod;
-            RouteHandler handler = handlers.get(handlerKey);
+            RouteHandler handler = handlers.get(route);
 
             if (handler != null) {
                 return handler.handle(requestContext);
             }
 
             return ResponseUtil.createResponse(400, "Невірний запит");
+        } catch (DeadlineExceededException e) {
+            Log.warn("Час обробки запиту вичерпано", "route", route);
+            return ResponseUtil.createResponse(504, e.getMessage());
         } catch (Exception e) {
+            Log.warn("Помилка обробки запиту", "route", route, e);
             return ResponseUtil.createResponse(400, "Помилка: " + e.getMessage());
         }
     }
 
-    private void initializeServices() {
+    // Клієнти та обробники створюються один раз на контейнер, з конструктора обробника у фазі ініціалізації:
+    // JVM виконує статичний блок холдера рівно один раз і без блокувань після нього
+    private static final class Services {
+        static {
+            long initStart = System.nanoTime();
+            Log.debug(() -> "REGION: " + System.getenv("REGION") + ", COGNITO_ID: " + System.getenv("COGNITO_ID")
+                    + ", TABLES_TABLE: " + System.getenv("TABLES_TABLE")
+                    + ", RESERVATIONS_TABLE: " + System.getenv("RESERVATIONS_TABLE"));
+
+            // Поза Lambda (локальний прогін) REGION не задано: клієнти AWS не створюємо, їх підставляє install()
+            if (System.getenv("REGION") != null) {
+                initializeServices();
+                initializeHandlers(JwtVerifier.forUserPool(System.getenv("REGION"), System.getenv("COGNITO_ID"), System.getenv("CLIENT_ID")));
+
+                if (Boolean.parseBoolean(System.getenv("PRIME_ON_INIT"))) {
+                    prime();
+                }
+            }
+            Log.info("Ініціалізація завершена", "ms", (System.nanoTime() - initStart) / 1_000_000);
+            Log.flush();
+        }
+
+        // Touching the holder runs its static initializer once
+        static void initialize() {
+        }
+    }
+
+    // SnapStart (CRaC) hooks. The function snapshot is taken after init, before any request: clients, routes
+    // and warmed-up classes go into it, so a restored container skips them. Outside a checkpointing runtime
+    // nothing calls these
+    private static final class CheckpointHooks implements Resource {
+        // Рантайм тримає на зареєстровані ресурси лише слабкі посилання
+        private static final CheckpointHooks INSTANCE = new CheckpointHooks();
+
+        static {
+            Core.getGlobalContext().register(INSTANCE);
+        }
+
+        // Touching the holder registers the hooks once
+        static void register() {
+        }
+
+        @Override
+        public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+            Services.initialize();
+            // Без PRIME_ON_INIT холдер не прогрівав клієнтів; для знімка прогріваємо завжди
+            if (System.getenv("REGION") != null && !Boolean.parseBoolean(System.getenv("PRIME_ON_INIT"))) {
+                prime();
+            }
+            Log.info("Знімок контейнера готовий");
+            Log.flush();
+        }
+
+        @Override
+        public void afterRestore(org.crac.Context<? extends Resource> context) {
+            if (admission != null) {
+                admission.restart();
+            }
+            Log.info("Контейнер відновлено зі знімка");
+            Log.flush();
+        }
+    }
+
+    private static void initializeServices() {
         String region = System.getenv("REGION");
 
-        // Ініціалізація клієнта Cognito
-        cognitoClient = AWSCognitoIdentityProviderClientBuilder.standard()
-                .withRegion(region)
+        // Асинхронні клієнти: незалежні виклики одного запиту виконуються паралельно
+        cognitoClient = CognitoIdentityProviderAsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentialsProvider())
                 .build();
 
-        // Ініціалізація клієнта DynamoDB
-        AmazonDynamoDB amazonDynamoDB = AmazonDynamoDBClientBuilder.standard()
-                .withRegion(region)
+        dynamoDb = DynamoDbAsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentialsProvider())
                 .build();
-        dynamoDB = new DynamoDB(amazonDynamoDB);
+
+        // Клієнт черги потрібен лише асинхронному прийому бронювань
+        if (Boolean.parseBoolean(System.getenv("ASYNC_RESERVATIONS"))) {
+            sqsClient = SqsAsyncClient.builder()
+                    .region(Region.of(region))
+                    .credentialsProvider(credentialsProvider())
+                    .build();
+        }
     }
 
-    private void initializeHandlers(Context context) {
-        String cognitoId = System.getenv("COGNITO_ID");
-        String clientId = System.getenv("CLIENT_ID");
-        String tablesTableName = System.getenv("TABLES_TABLE");
-        String reservationsTableName = System.getenv("RESERVATIONS_TABLE");
+    private static void initializeHandlers(JwtVerifier verifier) {
+        String cognitoId = setting("COGNITO_ID");
+        String clientId = setting("CLIENT_ID");
+        String tablesTableName = setting("TABLES_TABLE");
+        String reservationsTableName = setting("RESERVATIONS_TABLE");
 
         // Обробники авторизації
         AuthService authService = new AuthService(cognitoClient, cognitoId, clientId);
         handlers.put("/signup:POST", new SignupHandler(authService));
         handlers.put("/signin:POST", new SigninHandler(authService));
 
+        // Локальна перевірка id-токенів Cognito для захищених маршрутів
+        jwtVerifier = verifier;
+
+        // Спільні знімки каталогів столів (по одному на заклад) для TableService і ReservationService
+        String catalogTtl = setting("TABLE_CATALOG_TTL_SECONDS");
+        long catalogTtlMillis = Long.parseLong(catalogTtl != null ? catalogTtl : "10") * 1000;
+        tableCatalogs = new TableCatalogs(dynamoDb, tablesTableName, catalogTtlMillis);
+
+        // Повтори POST з тим самим Idempotency-Key отримують збережену відповідь
+        String idempotencyTtl = setting("IDEMPOTENCY_TTL_SECONDS");
+        String idempotencyCacheSize = setting("IDEMPOTENCY_CACHE_SIZE");
+        IdempotencyStore idempotencyStore = new IdempotencyStore(dynamoDb, reservationsTableName,
+                Long.parseLong(idempotencyTtl != null ? idempotencyTtl : "86400") * 1000,
+                Integer.parseInt(idempotencyCacheSize != null ? idempotencyCacheSize : "1000"));
+
         // Обробники столів
-        TableService tableService = new TableService(dynamoDB, tablesTableName);
-        handlers.put("/tables:GET", new GetTablesHandler(tableService));
-        handlers.put("/tables:POST", new CreateTableHandler(tableService));
-        handlers.put("/tables/{tableId}:GET", new GetTableByIdHandler(tableService));
+        TableService tableService = new TableService(dynamoDb, tablesTableName, tableCatalogs);
+        handlers.put("/tables:GET", new AuthenticatedRoute(jwtVerifier, admission, new GetTablesHandler(tableService)));
+        handlers.put("/tables:POST", new AuthenticatedRoute(jwtVerifier, admission,
+                new IdempotentRoute(idempotencyStore, "/tables:POST", new CreateTableHandler(tableService))));
+        handlers.put("/tables/{tableId}:GET", new AuthenticatedRoute(jwtVerifier, admission, new GetTableByIdHandler(tableService)));
 
         // Обробники бронювань
-        ReservationService reservationService = new ReservationService(dynamoDB, reservationsTableName, tablesTableName);
-        handlers.put("/reservations:GET", new GetReservationsHandler(reservationService));
-        handlers.put("/reservations:POST", new CreateReservationHandler(reservationService));
+        ReservationService reservationService = new ReservationService(dynamoDb, reservationsTableName, tableCatalogs);
+        ReservationIntakeService intakeService = new ReservationIntakeService(sqsClient, setting("RESERVATION_QUEUE"),
+                dynamoDb, reservationsTableName, tableCatalogs);
+        // В асинхронному режимі POST лише ставить бронювання в чергу і одразу відповідає 202
+        RouteHandler createReservation = Boolean.parseBoolean(setting("ASYNC_RESERVATIONS")) && sqsClient != null
+                ? new EnqueueReservationHandler(intakeService)
+                : new CreateReservationHandler(reservationService);
+        handlers.put("/reservations:GET", new AuthenticatedRoute(jwtVerifier, admission, new GetReservationsHandler(reservationService)));
+        handlers.put("/reservations:POST", new AuthenticatedRoute(jwtVerifier, admission,
+                new IdempotentRoute(idempotencyStore, "/reservations:POST", createReservation)));
+        handlers.put("/reservations/{reservationId}/status:GET", new AuthenticatedRoute(jwtVerifier, admission,
+                new GetReservationStatusHandler(intakeService)));
+        ReservationBatchService batchService = new ReservationBatchService(dynamoDb, reservationsTableName, tableCatalogs);
+        handlers.put("/reservations/batch:POST", new AuthenticatedRoute(jwtVerifier, admission, new CreateReservationBatchHandler(batchService)));
+
+        // Пошук вільних столів за бітмапами зайнятості
+        AvailabilityService availabilityService = new AvailabilityService(dynamoDb, reservationsTableName, tableCatalogs);
+        handlers.put("/availability:GET", new AuthenticatedRoute(jwtVerifier, admission, new GetAvailabilityHandler(availabilityService)));
+    }
+
+    // With SnapStart, Lambda sets no credential variables: the SDK gets them from the container endpoint
+    // on every refresh, so credentials never come from a snapshot
+    static AwsCredentialsProvider credentialsProvider() {
+        if (System.getenv("AWS_CONTAINER_CREDENTIALS_FULL_URI") != null) {
+            return ContainerCredentialsProvider.builder().build();
+        }
+        return EnvironmentVariableCredentialsProvider.create();
     }
 
-    private Map<String, Object> parseBody(String body) throws JsonProcessingException {
-        return body != null ? objectMapper.readValue(body, Map.class) : null;
+    static String setting(String name) {
+        String value = System.getenv(name);
+        return value != null ? value : System.getProperty(name);
+    }
+
+    // Прогрів Jackson та маршалерів SDK, щоб перший запит не платив за завантаження класів і TLS-з'єднання
+    static void prime() {
+        try {
+            RequestBodies.SIGNUP.readValue("{\"email\":\"prime@example.com\",\"password\":\"Prime-Password-1\"}");
+            RequestBodies.TABLE.readValue("{\"id\":1,\"number\":1,\"places\":4,\"isVip\":false}");
+            RequestBodies.RESERVATION.readValue("{\"tableNumber\":1,\"date\":\"2024-01-01\",\"slotTimeStart\":\"12:00\"}");
+            ResponseUtil.write(ResponseUtil.createResponse(200, Map.of("id", 1)), new ByteArrayOutputStream());
+        } catch (Exception e) {
+            Log.warn("Прогрів Jackson не вдався", "step", "jackson", e);
+        }
+        try {
+            // Завантажує перший знімок каталогу столів закладу за замовчуванням
+            tableCatalogs.of(Venue.defaultVenue()).current();
+        } catch (Exception e) {
+            Log.warn("Прогрів DynamoDB не вдався", "step", "dynamodb", e);
+        }
+        try {
+            jwtVerifier.prime();
+        } catch (Exception e) {
+            Log.warn("Завантаження JWKS не вдалося", "step", "jwks", e);
+        }
+        try {
+            cognitoClient.describeUserPool(DescribeUserPoolRequest.builder()
+                    .userPoolId(setting("COGNITO_ID"))
+                    .build()).join();
+        } catch (Exception e) {
+            Log.warn("Прогрів Cognito не вдався", "step", "cognito", e);
+        }
     }
 }
 
 // Request context to pass around handler chain
 class ApiRequestContext {
+    // Час, який лишаємо на серіалізацію відповіді після очікування сервісів
+    static final long RESPONSE_RESERVE_MILLIS = 250;
+
     private final Map<String, Object> request;
-    private final Map<String, Object> body;
+    private final String body;
     private final Map<String, String> pathParams;
     private final Map<String, String> headers;
+    private final Map<String, String> queryParams;
     private final Context lambdaContext;
+    private VerifiedToken principal;
+    private Venue venue;
 
-    public ApiRequestContext(Map<String, Object> request, Map<String, Object> body,
+    public ApiRequestContext(Map<String, Object> request, String body,
                              Map<String, String> pathParams, Map<String, String> headers,
-                             Context lambdaContext) {
+                             Map<String, String> queryParams, Context lambdaContext) {
         this.request = request;
         this.body = body;
         this.pathParams = pathParams;
         this.headers = headers;
+        this.queryParams = queryParams != null ? queryParams : Map.of();
         this.lambdaContext = lambdaContext;
     }
 
@@ -169,10 +397,42 @@ class ApiRequestContext {
         return request;
     }
 
-    public Map<String, Object> getBody() {
+    public String getBody() {
         return body;
     }
 
+    // Binds the body to its typed request; malformed input fails here, before any AWS call
+    public <T> T readBody(ObjectReader reader) {
+        if (body == null || body.isEmpty()) {
+            throw new IllegalArgumentException("Відсутнє тіло запиту");
+        }
+        try {
+            return reader.readValue(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Невірне тіло запиту: " + e.getOriginalMessage());
+        }
+    }
+
+    // Waits for a service result within the time left in the invocation; late results are cancelled
+    public <T> T await(CompletableFuture<T> future) {
+        long budget = lambdaContext.getRemainingTimeInMillis() - RESPONSE_RESERVE_MILLIS;
+        try {
+            return future.get(Math.max(budget, 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new DeadlineExceededException("Час обробки запиту вичерпано");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException("Обробку запиту перервано");
+        } catch (ExecutionException e) {
+            Throwable cause = Futures.unwrap(e);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+
     public Map<String, String> getPathParams() {
         return pathParams;
     }
@@ -181,144 +441,263 @@ class ApiRequestContext {
         return headers;
     }
 
+    public Map<String, String> getQueryParams() {
+        return queryParams;
+    }
+
     public Context getLambdaContext() {
         return lambdaContext;
     }
+
+    // Header names keep the client's casing in proxy events
+    public String getHeader(String name) {
+        return header(headers, name);
+    }
+
+    // Header names are case-insensitive; HTTP/2 clients send them in lower case
+    static String header(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    // The venue AuthenticatedRoute checked against the token; only authenticated routes have one
+    public Venue getVenue() {
+        if (venue == null) {
+            throw new IllegalStateException("Заклад не визначено для неавтентифікованого маршруту");
+        }
+        return venue;
+    }
+
+    public void setVenue(Venue venue) {
+        this.venue = venue;
+    }
+
+    public VerifiedToken getPrincipal() {
+        return principal;
+    }
+
+    public void setPrincipal(VerifiedToken principal) {
+        this.principal = principal;
+    }
+}
+
+class DeadlineExceededException extends RuntimeException {
+    DeadlineExceededException(String message) {
+        super(message);
+    }
 }
 
 // Interface for all route handlers
 interface RouteHandler {
-    Map<String, Object> handle(ApiRequestContext context);
+    ApiResponse handle(ApiRequestContext context);
 }
 
-// Utility methods for responses
-class ResponseUtil {
-    public static Map<String, Object> createResponse(int statusCode, Object body) {
-        Map<String, Object> response = new HashMap<>();
-        response.put("statusCode", statusCode);
-        response.put("body", body instanceof String ? body : toJson(body));
-
-        // Додаємо CORS-заголовки до кожної відповіді
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", "application/json");
-        headers.put("Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key,X-Amz-Security-Token");
-        headers.put("Access-Control-Allow-Origin", "*");
-        headers.put("Access-Control-Allow-Methods", "*");
-        headers.put("Accept-Version", "*");
-
-        response.put("headers", headers);
-        return response;
+// Verifies the Cognito id token from the Authorization header and the venue the user may act for
+// (Venue.authorize) before delegating to the route
+class AuthenticatedRoute implements RouteHandler {
+    private final JwtVerifier jwtVerifier;
+    // null when admission control is off
+    private final AdmissionControl admission;
+    private final RouteHandler delegate;
+
+    public AuthenticatedRoute(JwtVerifier jwtVerifier, AdmissionControl admission, RouteHandler delegate) {
+        this.jwtVerifier = jwtVerifier;
+        this.admission = admission;
+        this.delegate = delegate;
     }
 
-    private static String toJson(Object obj) {
+    @Override
+    public ApiResponse handle(ApiRequestContext context) {
+        String token = context.getHeader("Authorization");
+        if (token != null && token.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            token = token.substring(7);
+        }
         try {
-            return new ObjectMapper().writeValueAsString(obj);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to serialize to JSON: " + e.getMessage());
+            context.setPrincipal(jwtVerifier.verify(token));
+        } catch (InvalidTokenException e) {
+            return ResponseUtil.createResponse(401, e.getMessage());
         }
+        // Заклад з заголовка приймаємо лише з груп користувача в токені, інакше будь-хто бачив би чужі розділи
+        Venue venue = Venue.authorize(context.getPrincipal(), context.getHeader(Venue.HEADER));
+        if (venue == null) {
+            return ResponseUtil.createResponse(403, "Немає доступу до закладу");
+        }
+        context.setVenue(venue);
+        // Ліміт користувача рахуємо лише за перевіреним sub: його не змінити, не маючи іншого токена
+        if (admission != null) {
+            long waitNanos = admission.admit(AdmissionControl.userKey(context.getPrincipal()));
+            if (waitNanos > 0) {
+                return ResponseUtil.tooManyRequests(waitNanos);
+            }
+        }
+        return delegate.handle(context);
+    }
+}
+
+// Runs the route once per Idempotency-Key; retries with the same key and body get the stored response.
+// Requests without the header go straight through
+class IdempotentRoute implements RouteHandler {
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final String route;
+    private final RouteHandler delegate;
+
+    public IdempotentRoute(IdempotencyStore store, String route, RouteHandler delegate) {
+        this.store = store;
+        this.route = route;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ApiResponse handle(ApiRequestContext context) {
+        String key = context.getHeader("Idempotency-Key");
+        if (key == null) {
+            return delegate.handle(context);
+        }
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseUtil.createResponse(400, "Idempotency-Key має містити від 1 до " + MAX_KEY_LENGTH + " символів");
+        }
+
+        String id = IdempotencyStore.recordId(route, context.getVenue(), context.getPrincipal().getSubject(), key);
+        String fingerprint = IdempotencyStore.fingerprint(context.getBody());
+        ApiResponse stored = context.await(store.claim(id, fingerprint));
+        if (stored != null) {
+            return stored;
+        }
+
+        ApiResponse response;
+        try {
+            response = delegate.handle(context);
+        } catch (RuntimeException e) {
+            store.release(id);
+            throw e;
+        }
+        // Збоям сервера повтор має дати ще одну спробу, тож їх не зберігаємо
+        if (response.getStatusCode() >= 500) {
+            store.release(id);
+            return response;
+        }
+        try {
+            context.await(store.complete(id, fingerprint, response));
+        } catch (RuntimeException e) {
+            Log.warn("Не вдалося зберегти відповідь для Idempotency-Key", "route", route, e);
+        }
+        return response;
     }
 }
 
 // Auth Service and Handlers
 class AuthService {
-    private final AWSCognitoIdentityProvider cognitoClient;
+    private final CognitoIdentityProviderAsyncClient cognitoClient;
     private final String cognitoId;
     private final String clientId;
 
-    public AuthService(AWSCognitoIdentityProvider cognitoClient, String cognitoId, String clientId) {
+    public AuthService(CognitoIdentityProviderAsyncClient cognitoClient, String cognitoId, String clientId) {
         this.cognitoClient = cognitoClient;
         this.cognitoId = cognitoId;
         this.clientId = clientId;
     }
 
-    public Map<String, Object> signup(String email, String password, String firstName, String lastName, Context context) {
-        context.getLogger().log("Спроба реєстрації для email: " + email + ", firstName: " + firstName + ", lastName: " + lastName);
-        context.getLogger().log("Використовується cognitoId: " + cognitoId);
+    public CompletableFuture<ApiResponse> signup(String email, String password, String firstName, String lastName) {
+        Log.debug("Спроба реєстрації", "email", email);
 
         // Валідація вхідних даних
         if (!ValidationUtil.isValidEmail(email)) {
-            context.getLogger().log("Невірний формат email: " + email);
-            return ResponseUtil.createResponse(400, "Невірний формат email");
+            Log.debug("Невірний формат email", "email", email);
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Невірний формат email"));
         }
         if (!ValidationUtil.isValidPassword(password)) {
-            context.getLogger().log("Невірний формат пароля для email: " + email + ". Пароль має бути щонайменше 12 символів, із великими та малими літерами, цифрою та спеціальним символом.");
-            return ResponseUtil.createResponse(400, "Невірний формат пароля");
+            // Пароль має бути щонайменше 12 символів, із великими та малими літерами, цифрою та спеціальним символом
+            Log.debug("Невірний формат пароля", "email", email);
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Невірний формат пароля"));
         }
         if (firstName == null || lastName == null || firstName.trim().isEmpty() || lastName.trim().isEmpty()) {
-            context.getLogger().log("Відсутнє або порожнє firstName чи lastName: firstName=" + firstName + ", lastName=" + lastName);
-            return ResponseUtil.createResponse(400, "Відсутнє або порожнє firstName чи lastName");
+            Log.debug("Відсутнє або порожнє firstName чи lastName", "email", email);
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Відсутнє або порожнє firstName чи lastName"));
         }
 
-        try {
-            context.getLogger().log("Створення користувача в Cognito для email: " + email);
-            AdminCreateUserRequest createUserRequest = new AdminCreateUserRequest()
-                    .withUserPoolId(cognitoId)
-                    .withUsername(email)
-                    .withUserAttributes(
-                            new AttributeType().withName("email").withValue(email),
-                            new AttributeType().withName("given_name").withValue(firstName),
-                            new AttributeType().withName("family_name").withValue(lastName),
-                            new AttributeType().withName("email_verified").withValue("true")
-                    )
-                    .withTemporaryPassword(password)
-                    .withMessageAction("SUPPRESS");
-
-            cognitoClient.adminCreateUser(createUserRequest);
-            context.getLogger().log("Користувач успішно створений для email: " + email);
-
-            context.getLogger().log("Встановлення постійного пароля для email: " + email);
-            AdminSetUserPasswordRequest setPasswordRequest = new AdminSetUserPasswordRequest()
-                    .withUserPoolId(cognitoId)
-                    .withUsername(email)
-                    .withPassword(password)
-                    .withPermanent(true);
-
-            cognitoClient.adminSetUserPassword(setPasswordRequest);
-            context.getLogger().log("Пароль успішно встановлено для email: " + email);
-
-            return ResponseUtil.createResponse(200, "Реєстрація успішна");
-        } catch (UsernameExistsException e) {
-            context.getLogger().log("Користувач уже існує, спроба оновити пароль для email: " + email);
-            try {
-                AdminSetUserPasswordRequest setPasswordRequest = new AdminSetUserPasswordRequest()
-                        .withUserPoolId(cognitoId)
-                        .withUsername(email)
-                        .withPassword(password)
-                        .withPermanent(true);
-                cognitoClient.adminSetUserPassword(setPasswordRequest);
-                context.getLogger().log("Пароль успішно оновлено для існуючого користувача: " + email);
-                return ResponseUtil.createResponse(200, "Реєстрація успішна (користувач уже існував, пароль оновлено)");
-            } catch (Exception ex) {
-                context.getLogger().log("Не вдалося оновити пароль для існуючого користувача: " + ex.getMessage());
-                return ResponseUtil.createResponse(400, "Не вдалося оновити пароль: " + ex.getMessage());
+        Log.debug("Створення користувача в Cognito", "email", email);
+        AdminCreateUserRequest createUserRequest = AdminCreateUserRequest.builder()
+                .userPoolId(cognitoId)
+                .username(email)
+                .userAttributes(
+                        AttributeType.builder().name("email").value(email).build(),
+                        AttributeType.builder().name("given_name").value(firstName).build(),
+                        AttributeType.builder().name("family_name").value(lastName).build(),
+                        AttributeType.builder().name("email_verified").value("true").build()
+                )
+                .temporaryPassword(password)
+                .messageAction(MessageActionType.SUPPRESS)
+                .build();
+
+        AdminSetUserPasswordRequest setPasswordRequest = AdminSetUserPasswordRequest.builder()
+                .userPoolId(cognitoId)
+                .username(email)
+                .password(password)
+                .permanent(true)
+                .build();
+
+        CompletableFuture<ApiResponse> registered = cognitoClient.adminCreateUser(createUserRequest)
+                .thenCompose(created -> {
+                    Log.debug("Користувач створений, встановлюємо постійний пароль", "email", email);
+                    return cognitoClient.adminSetUserPassword(setPasswordRequest);
+                })
+                .thenApply(passwordSet -> {
+                    Log.info("Реєстрація успішна", "email", email);
+                    return ResponseUtil.createResponse(200, "Реєстрація успішна");
+                });
+
+        // Java 11 has no exceptionallyCompose, so recovery is handle(...) + thenCompose(identity)
+        return registered.handle((response, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(response);
             }
-        } catch (Exception e) {
-            context.getLogger().log("Реєстрація не вдалася для email " + email + ": " + e.getMessage());
-            return ResponseUtil.createResponse(400, "Реєстрація не вдалася: " + e.getMessage());
-        }
+            Throwable cause = Futures.unwrap(error);
+            if (!(cause instanceof UsernameExistsException)) {
+                Log.warn("Реєстрація не вдалася", "email", email, cause);
+                return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Реєстрація не вдалася: " + cause.getMessage()));
+            }
+            Log.info("Користувач уже існує, оновлюємо пароль", "email", email);
+            return cognitoClient.adminSetUserPassword(setPasswordRequest).handle((passwordSet, updateError) -> {
+                if (updateError != null) {
+                    Throwable updateCause = Futures.unwrap(updateError);
+                    Log.warn("Не вдалося оновити пароль для існуючого користувача", "email", email, updateCause);
+                    return ResponseUtil.createResponse(400, "Не вдалося оновити пароль: " + updateCause.getMessage());
+                }
+                Log.info("Пароль оновлено для існуючого користувача", "email", email);
+                return ResponseUtil.createResponse(200, "Реєстрація успішна (користувач уже існував, пароль оновлено)");
+            });
+        }).thenCompose(Function.identity());
     }
 
-    public Map<String, Object> signin(String email, String password) {
+    public CompletableFuture<ApiResponse> signin(String email, String password) {
         if (!ValidationUtil.isValidEmail(email) || !ValidationUtil.isValidPassword(password)) {
-            return ResponseUtil.createResponse(400, "Невірні облікові дані");
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Невірні облікові дані"));
         }
 
-        AdminInitiateAuthRequest authRequest = new AdminInitiateAuthRequest()
-                .withAuthFlow(AuthFlowType.ADMIN_NO_SRP_AUTH)
-                .withUserPoolId(cognitoId)
-                .withClientId(clientId)
-                .withAuthParameters(new HashMap<String, String>() {{
-                    put("USERNAME", email);
-                    put("PASSWORD", password);
-                }});
+        AdminInitiateAuthRequest authRequest = AdminInitiateAuthRequest.builder()
+                .authFlow(AuthFlowType.ADMIN_NO_SRP_AUTH)
+                .userPoolId(cognitoId)
+                .clientId(clientId)
+                .authParameters(Map.of("USERNAME", email, "PASSWORD", password))
+                .build();
 
-        AdminInitiateAuthResult authResult = cognitoClient.adminInitiateAuth(authRequest);
-        String idToken = authResult.getAuthenticationResult().getIdToken();
+        return cognitoClient.adminInitiateAuth(authRequest).thenApply(authResult -> {
+            String idToken = authResult.authenticationResult().idToken();
 
-        Map<String, String> responseBody = new HashMap<>();
-        responseBody.put("idToken", idToken);
+            Map<String, String> responseBody = new HashMap<>();
+            responseBody.put("idToken", idToken);
 
-        return ResponseUtil.createResponse(200, responseBody);
+            return ResponseUtil.createResponse(200, responseBody);
+        });
     }
 }
 
@@ -330,14 +709,9 @@ class SignupHandler implements RouteHandler {
     }
 
     @Override
-    public Map<String, Object> handle(ApiRequestContext context) {
-        Map<String, Object> body = context.getBody();
-        String email = (String) body.get("email");
-        String password = (String) body.get("password");
-        String firstName = (String) body.get("firstName");
-        String lastName = (String) body.get("lastName");
-
-        return authService.signup(email, password, firstName, lastName, context.getLambdaContext());
+    public ApiResponse handle(ApiRequestContext context) {
+        SignupRequest body = context.readBody(RequestBodies.SIGNUP);
+        return context.await(authService.signup(body.getEmail(), body.getPassword(), body.getFirstName(), body.getLastName()));
     }
 }
 
@@ -349,112 +723,126 @@ class SigninHandler implements RouteHandler {
     }
 
     @Override
-    public Map<String, Object> handle(ApiRequestContext context) {
-        Map<String, Object> body = context.getBody();
-        String email = (String) body.get("email");
-        String password = (String) body.get("password");
-
-        return authService.signin(email, password);
+    public ApiResponse handle(ApiRequestContext context) {
+        SigninRequest body = context.readBody(RequestBodies.SIGNIN);
+        return context.await(authService.signin(body.getEmail(), body.getPassword()));
     }
 }
 
 // Table Service and Handlers
 class TableService {
-    private final DynamoDB dynamoDB;
+    private final DynamoDbAsyncClient dynamoDb;
     private final String tablesTableName;
+    private final TableCatalogs tableCatalogs;
 
-    public TableService(DynamoDB dynamoDB, String tablesTableName) {
-        this.dynamoDB = dynamoDB;
+    public TableService(DynamoDbAsyncClient dynamoDb, String tablesTableName, TableCatalogs tableCatalogs) {
+        this.dynamoDb = dynamoDb;
         this.tablesTableName = tablesTableName;
+        this.tableCatalogs = tableCatalogs;
     }
 
-    public Map<String, Object> getAllTables() {
-        Table table = dynamoDB.getTable(tablesTableName);
-        List<Map<String, Object>> tables = new ArrayList<>();
+    // The venue and its catalogue version are the ETag: an unchanged catalogue answers 304 from the in-memory snapshot,
+    // and a changed one reuses the page rendered for this version by an earlier request
+    public CompletableFuture<ApiResponse> getAllTables(Venue venue, Map<String, String> queryParams, String ifNoneMatch) {
+        int limit;
+        Map<String, Object> cursor;
+        try {
+            limit = PageCursor.parseLimit(queryParams.get("limit"));
+            cursor = PageCursor.decode(queryParams.get("nextToken"));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, e.getMessage()));
+        }
 
-        for (Item item : table.scan()) {
-            Map<String, Object> tableData = new LinkedHashMap<>();
-            tableData.put("id", Integer.parseInt(item.getString("id")));
-            tableData.put("number", item.getInt("number"));
-            tableData.put("places", item.getInt("places"));
-            tableData.put("isVip", item.getBoolean("isVip"));
-            if (item.isPresent("minOrder")) {
-                tableData.put("minOrder", item.getInt("minOrder"));
+        return tableCatalogs.of(venue).currentAsync().thenApply(snapshot -> {
+            String etag = ResponseUtil.etag(venue, snapshot.getVersion());
+            if (ResponseUtil.matches(ifNoneMatch, etag)) {
+                return ResponseUtil.notModified(etag);
             }
-            tables.add(tableData);
-        }
 
-        tables.sort(Comparator.comparingInt(t -> (Integer) t.get("id")));
+            int from = cursor != null ? snapshot.indexAfter(((Number) cursor.get("id")).intValue()) : 0;
+            String body = snapshot.rendered("tables:" + from + ":" + limit, () -> {
+                List<Map<String, Object>> views = snapshot.views();
+                int to = Math.min(from + limit, views.size());
 
-        Map<String, Object> responseBody = new HashMap<>();
-        responseBody.put("tables", tables);
-        return ResponseUtil.createResponse(200, responseBody);
+                Map<String, Object> responseBody = new HashMap<>();
+                responseBody.put("tables", views.subList(from, to));
+                if (to < views.size()) {
+                    responseBody.put("nextToken", PageCursor.encode(Map.of("id", views.get(to - 1).get("id"))));
+                }
+                return responseBody;
+            });
+            return ResponseUtil.withEtag(ResponseUtil.createResponse(200, body), etag);
+        });
     }
 
-    public Map<String, Object> createTable(Map<String, Object> tableData) {
+    public CompletableFuture<ApiResponse> createTable(Venue venue, TableRequest tableData) {
         // Перевірка обов'язкових полів
-        if (!tableData.containsKey("id") || tableData.get("id") == null) {
-            return ResponseUtil.createResponse(400, "Поле 'id' є обов'язковим");
+        if (tableData.getId() == null) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Поле 'id' є обов'язковим"));
         }
-        if (!tableData.containsKey("number") || tableData.get("number") == null) {
-            return ResponseUtil.createResponse(400, "Поле 'number' є обов'язковим");
+        if (tableData.getNumber() == null) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Поле 'number' є обов'язковим"));
         }
-        if (!tableData.containsKey("places") || tableData.get("places") == null) {
-            return ResponseUtil.createResponse(400, "Поле 'places' є обов'язковим");
+        if (tableData.getPlaces() == null) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Поле 'places' є обов'язковим"));
         }
-        if (!tableData.containsKey("isVip") || tableData.get("isVip") == null) {
-            return ResponseUtil.createResponse(400, "Поле 'isVip' є обов'язковим");
+        if (tableData.getIsVip() == null) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Поле 'isVip' є обов'язковим"));
         }
 
-        try {
-            Integer id = (Integer) tableData.get("id");
-            Integer number = (Integer) tableData.get("number");
-            Integer places = (Integer) tableData.get("places");
-            Boolean isVip = (Boolean) tableData.get("isVip");
-
-            Table table = dynamoDB.getTable(tablesTableName);
-            Item item = new Item()
-                    .withPrimaryKey("id", String.valueOf(id))
-                    .withInt("number", number)
-                    .withInt("places", places)
-                    .withBoolean("isVip", isVip);
-
-            if (tableData.containsKey("minOrder")) {
-                item.withInt("minOrder", (Integer) tableData.get("minOrder"));
-            }
-
-            table.putItem(item);
-
-            // Повертаємо JSON об'єкт з id
-            Map<String, Object> responseBody = new HashMap<>();
-            responseBody.put("id", id);
-            return ResponseUtil.createResponse(200, responseBody);
-
-        } catch (Exception e) {
-            return ResponseUtil.createResponse(400, "Помилка при створенні столу: " + e.getMessage());
+        int id = tableData.getId();
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("id", AttributeValue.fromS(venue.tableItemId(id)));
+        item.put(Venue.VENUE_KEY, AttributeValue.fromS(venue.id()));
+        item.put("number", DynamoItems.number(tableData.getNumber()));
+        item.put("places", DynamoItems.number(tableData.getPlaces()));
+        item.put("isVip", AttributeValue.fromBool(tableData.getIsVip()));
+        if (tableData.getMinOrder() != null) {
+            item.put("minOrder", DynamoItems.number(tableData.getMinOrder()));
         }
-    }
-
-    public Map<String, Object> getTableById(String tableId, Context context) {
-        context.getLogger().log("Retrieving table with id: " + tableId);
 
-        Table table = dynamoDB.getTable(tablesTableName);
-        Item item = table.getItem(new GetItemSpec().withPrimaryKey("id", tableId));
+        // Стіл і нова версія каталогу пишуться разом: інакше стіл міг з'явитися без зміни версії,
+        // а каталог і ETag лишалися б застарілими до кінця TTL
+        TableCatalog catalog = tableCatalogs.of(venue);
+        return dynamoDb.transactWriteItems(TransactWriteItemsRequest.builder()
+                        .transactItems(
+                                TransactWriteItem.builder().put(Put.builder().tableName(tablesTableName).item(item).build()).build(),
+                                TransactWriteItem.builder().update(catalog.versionBump()).build())
+                        .build())
+                .thenRun(catalog::tableCreated)
+                .handle((done, error) -> {
+                    if (error != null) {
+                        return ResponseUtil.createResponse(400, "Помилка при створенні столу: " + Futures.unwrap(error).getMessage());
+                    }
+                    // Повертаємо JSON об'єкт з id
+                    Map<String, Object> responseBody = new HashMap<>();
+                    responseBody.put("id", id);
+                    return ResponseUtil.createResponse(200, responseBody);
+                });
+    }
 
-        if (item == null) {
-            return ResponseUtil.createResponse(400, "Table not found");
-        }
+    public CompletableFuture<ApiResponse> getTableById(Venue venue, String tableId, String ifNoneMatch) {
+        Log.debug("Retrieving table", "tableId", tableId);
 
-        Map<String, Object> tableData = new LinkedHashMap<>();
-        tableData.put("id", Integer.parseInt(item.getString("id")));
-        tableData.put("number", item.getInt("number"));
-        tableData.put("places", item.getInt("places"));
-        tableData.put("isVip", item.getBoolean("isVip"));
-        if (item.isPresent("minOrder")) {
-            tableData.put("minOrder", item.getInt("minOrder"));
+        int id;
+        try {
+            id = Integer.parseInt(tableId);
+        } catch (NumberFormatException e) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Table not found"));
         }
 
-        return ResponseUtil.createResponse(200, tableData);
+        return tableCatalogs.of(venue).currentAsync().thenApply(snapshot -> {
+            TableRecord table = snapshot.findById(id);
+            if (table == null) {
+                return ResponseUtil.createResponse(400, "Table not found");
+            }
+            String etag = ResponseUtil.etag(venue, snapshot.getVersion());
+            if (ResponseUtil.matches(ifNoneMatch, etag)) {
+                return ResponseUtil.notModified(etag);
+            }
+            String body = snapshot.rendered("table:" + id, table::getView);
+            return ResponseUtil.withEtag(ResponseUtil.createResponse(200, body), etag);
+        });
     }
 }
 
@@ -466,8 +854,8 @@ class GetTablesHandler implements RouteHandler {
     }
 
     @Override
-    public Map<String, Object> handle(ApiRequestContext context) {
-        return tableService.getAllTables();
+    public ApiResponse handle(ApiRequestContext context) {
+        return context.await(tableService.getAllTables(context.getVenue(), context.getQueryParams(), context.getHeader("If-None-Match")));
     }
 }
 
@@ -479,10 +867,10 @@ class CreateTableHandler implements RouteHandler {
     }
 
     @Override
-    public Map<String, Object> handle(ApiRequestContext context) {
-        Map<String, Object> body = context.getBody();
-        context.getLambdaContext().getLogger().log("Отримано запит на створення столу: " + body);
-        return tableService.createTable(body);
+    public ApiResponse handle(ApiRequestContext context) {
+        TableRequest body = context.readBody(RequestBodies.TABLE);
+        Log.debug("Отримано запит на створення столу", "id", body.getId());
+        return context.await(tableService.createTable(context.getVenue(), body));
     }
 }
 
@@ -494,140 +882,160 @@ class GetTableByIdHandler implements RouteHandler {
     }
 
     @Override
-    public Map<String, Object> handle(ApiRequestContext context) {
+    public ApiResponse handle(ApiRequestContext context) {
         String tableId = context.getPathParams().get("tableId");
-        return tableService.getTableById(tableId, context.getLambdaContext());
+        return context.await(tableService.getTableById(context.getVenue(), tableId, context.getHeader("If-None-Match")));
     }
 }
 
-// Reservation Service and Handlers
-class ReservationService {
-    private final DynamoDB dynamoDB;
-    private final String reservationsTableName;
-    private final String tablesTableName;
+// Reservation Handlers
+class GetReservationsHandler implements RouteHandler {
+    private final ReservationService reservationService;
 
-    public ReservationService(DynamoDB dynamoDB, String reservationsTableName, String tablesTableName) {
-        this.dynamoDB = dynamoDB;
-        this.reservationsTableName = reservationsTableName;
-        this.tablesTableName = tablesTableName;
+    public GetReservationsHandler(ReservationService reservationService) {
+        this.reservationService = reservationService;
     }
 
-    public Map<String, Object> getAllReservations() {
-        Table table = dynamoDB.getTable(reservationsTableName);
-        List<Map<String, Object>> reservations = new ArrayList<>();
-
-        for (Item item : table.scan()) {
-            reservations.add(item.asMap());
-        }
-
-        Map<String, Object> responseBody = new HashMap<>();
-        responseBody.put("reservations", reservations);
-        return ResponseUtil.createResponse(200, responseBody);
+    @Override
+    public ApiResponse handle(ApiRequestContext context) {
+        return context.await(reservationService.getReservations(context.getVenue(), context.getQueryParams()));
     }
+}
 
-    public Map<String, Object> createReservation(Map<String, Object> reservationData) {
-        // Verify table exists
-        Table tablesTable = dynamoDB.getTable(tablesTableName);
-        Integer tableNumber = (Integer) reservationData.get("tableNumber");
-        boolean tableExists = false;
-
-        for (Item item : tablesTable.scan()) {
-            if (item.getInt("number") == tableNumber) {
-                tableExists = true;
-                break;
-            }
-        }
-
-        if (!tableExists) {
-            return ResponseUtil.createResponse(400, "Table not found");
-        }
-
-        String date = (String) reservationData.get("date");
-        String newStart = (String) reservationData.get("slotTimeStart");
-        String newEnd = (String) reservationData.get("slotTimeEnd");
+class CreateReservationHandler implements RouteHandler {
+    private final ReservationService reservationService;
 
-        // Check for overlapping reservations
-        Table reservationsTable = dynamoDB.getTable(reservationsTableName);
-        for (Item existing : reservationsTable.scan()) {
-            if (existing.getInt("tableNumber") == tableNumber && existing.getString("date").equals(date)) {
-                String existingStart = existing.getString("slotTimeStart");
-                String existingEnd = existing.getString("slotTimeEnd");
+    public CreateReservationHandler(ReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
 
-                if (isOverlapping(newStart, newEnd, existingStart, existingEnd)) {
-                    return ResponseUtil.createResponse(400, "Reservation overlaps with an existing reservation");
-                }
-            }
-        }
+    @Override
+    public ApiResponse handle(ApiRequestContext context) {
+        return context.await(reservationService.createReservation(context.getVenue(), context.readBody(RequestBodies.RESERVATION)));
+    }
+}
 
-        // Create new reservation
-        String reservationId = UUID.randomUUID().toString();
-        Item reservation = new Item()
-                .withPrimaryKey("id", reservationId)
-                .withInt("tableNumber", tableNumber)
-                .withString("clientName", (String) reservationData.get("clientName"))
-                .withString("phoneNumber", (String) reservationData.get("phoneNumber"))
-                .withString("date", date)
-                .withString("slotTimeStart", newStart)
-                .withString("slotTimeEnd", newEnd);
+class EnqueueReservationHandler implements RouteHandler {
+    private final ReservationIntakeService intakeService;
 
-        reservationsTable.putItem(reservation);
+    public EnqueueReservationHandler(ReservationIntakeService intakeService) {
+        this.intakeService = intakeService;
+    }
 
-        Map<String, Object> responseBody = new HashMap<>();
-        responseBody.put("reservationId", reservationId);
-        return ResponseUtil.createResponse(200, responseBody);
+    @Override
+    public ApiResponse handle(ApiRequestContext context) {
+        return context.await(intakeService.enqueue(context.getVenue(), context.readBody(RequestBodies.RESERVATION)));
     }
+}
 
-    private boolean isOverlapping(String newStart, String newEnd, String existingStart, String existingEnd) {
-        int newStartMins = timeToMinutes(newStart);
-        int newEndMins = timeToMinutes(newEnd);
-        int existingStartMins = timeToMinutes(existingStart);
-        int existingEndMins = timeToMinutes(existingEnd);
+class GetReservationStatusHandler implements RouteHandler {
+    private final ReservationIntakeService intakeService;
 
-        return newStartMins < existingEndMins && newEndMins > existingStartMins;
+    public GetReservationStatusHandler(ReservationIntakeService intakeService) {
+        this.intakeService = intakeService;
     }
 
-    private int timeToMinutes(String time) {
-        String[] parts = time.split(":");
-        int hours = Integer.parseInt(parts[0]);
-        int minutes = Integer.parseInt(parts[1]);
-        return hours * 60 + minutes;
+    @Override
+    public ApiResponse handle(ApiRequestContext context) {
+        return context.await(intakeService.status(context.getPathParams().get("reservationId")));
     }
 }
 
-class GetReservationsHandler implements RouteHandler {
-    private final ReservationService reservationService;
+class CreateReservationBatchHandler implements RouteHandler {
+    private final ReservationBatchService batchService;
 
-    public GetReservationsHandler(ReservationService reservationService) {
-        this.reservationService = reservationService;
+    public CreateReservationBatchHandler(ReservationBatchService batchService) {
+        this.batchService = batchService;
     }
 
     @Override
-    public Map<String, Object> handle(ApiRequestContext context) {
-        return reservationService.getAllReservations();
+    public ApiResponse handle(ApiRequestContext context) {
+        List<ReservationRequest> body = context.readBody(RequestBodies.RESERVATION_BATCH);
+        Log.debug("Отримано пакет бронювань", "count", body != null ? body.size() : 0);
+        return context.await(batchService.createReservations(context.getVenue(), body));
     }
 }
 
-class CreateReservationHandler implements RouteHandler {
-    private final ReservationService reservationService;
+// Availability Service and Handlers
+class AvailabilityService {
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String reservationsTableName;
+    private final TableCatalogs tableCatalogs;
 
-    public CreateReservationHandler(ReservationService reservationService) {
-        this.reservationService = reservationService;
+    public AvailabilityService(DynamoDbAsyncClient dynamoDb, String reservationsTableName, TableCatalogs tableCatalogs) {
+        this.dynamoDb = dynamoDb;
+        this.reservationsTableName = reservationsTableName;
+        this.tableCatalogs = tableCatalogs;
     }
 
-    @Override
-    public Map<String, Object> handle(ApiRequestContext context) {
-        return reservationService.createReservation(context.getBody());
+    // Tables seating the party that are free for the whole [from, to) window, smallest first
+    public CompletableFuture<ApiResponse> getAvailableTables(Venue venue, Map<String, String> queryParams) {
+        String date = queryParams.get("date");
+        String from = queryParams.get("from");
+        String to = queryParams.get("to");
+        String validationError = ValidationUtil.validateAvailability(date, from, to);
+        if (validationError != null) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, validationError));
+        }
+        int places;
+        try {
+            places = Integer.parseInt(queryParams.get("places"));
+        } catch (NumberFormatException e) {
+            places = 0;
+        }
+        if (places < 1) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Параметр 'places' має бути додатним числом"));
+        }
+        long[] requested = SlotBitmap.mask(ReservationService.timeToMinutes(from), ReservationService.timeToMinutes(to));
+
+        // Каталог столів і бітмапи дня читаються паралельно; бітмапи всіх столів дня — один запит
+        // до індексу на кожен шард дня закладу, і шарди теж читаються паралельно
+        CompletableFuture<TableCatalog.Snapshot> catalog = tableCatalogs.of(venue).currentAsync();
+        Map<Integer, long[]> occupancy = new ConcurrentHashMap<>();
+        List<String> dayKeys = venue.dayKeys(date);
+        CompletableFuture<?>[] shards = new CompletableFuture<?>[dayKeys.size()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = dynamoDb.queryPaginator(QueryRequest.builder()
+                    .tableName(reservationsTableName)
+                    .indexName(ReservationService.OCCUPANCY_DATE_INDEX)
+                    .keyConditionExpression("#k = :k")
+                    .projectionExpression("tableNumber, #b")
+                    .expressionAttributeNames(Map.of("#k", ReservationService.OCCUPANCY_DATE_KEY, "#b", ReservationService.OCCUPANCY_BITS))
+                    .expressionAttributeValues(Map.of(":k", AttributeValue.fromS(dayKeys.get(i))))
+                    .build()).subscribe(page -> {
+                for (Map<String, AttributeValue> item : page.items()) {
+                    occupancy.put(DynamoItems.getInt(item, "tableNumber"),
+                            SlotBitmap.fromBytes(item.get(ReservationService.OCCUPANCY_BITS).b().asByteArray()));
+                }
+            });
+        }
+        CompletableFuture<Void> loaded = CompletableFuture.allOf(shards);
+
+        int partySize = places;
+        return catalog.thenCombine(loaded, (snapshot, done) -> {
+            List<Map<String, Object>> free = new ArrayList<>();
+            for (TableRecord table : snapshot.withPlacesAtLeast(partySize)) {
+                long[] booked = occupancy.get(table.getNumber());
+                if (booked == null || !SlotBitmap.intersects(booked, requested)) {
+                    free.add(table.getView());
+                }
+            }
+            Map<String, Object> responseBody = new HashMap<>();
+            responseBody.put("tables", free);
+            return ResponseUtil.createResponse(200, responseBody);
+        });
     }
 }
 
-// Validation Utility
-class ValidationUtil {
-    public static boolean isValidEmail(String email) {
-        return email != null && email.matches("^[A-Za-z0-9+_.-]+@(.+)$");
+class GetAvailabilityHandler implements RouteHandler {
+    private final AvailabilityService availabilityService;
+
+    public GetAvailabilityHandler(AvailabilityService availabilityService) {
+        this.availabilityService = availabilityService;
     }
 
-    public static boolean isValidPassword(String password) {
-        return password != null && password.length() >= 12 &&
-                password.matches("^(?=.*[a-z])(?=.*[A-Z])(?=.*\\d)(?=.*[$%^*-_])[A-Za-z\\d$%^*-_]+$");
+    @Override
+    public ApiResponse handle(ApiRequestContext context) {
+        return context.await(availabilityService.getAvailableTables(context.getVenue(), context.getQueryParams()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.task12;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+// Helpers for composing SDK futures
+final class Futures {
+    private Futures() {
+    }
+
+    // The exception a stage actually failed with, without the CompletionException/ExecutionException wrappers
+    static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
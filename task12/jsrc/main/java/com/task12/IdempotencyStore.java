@@ -0,0 +1,193 @@
+package com.task12;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Idempotency records for retried POSTs, kept in the reservations table under "#idempotency#" ids.
+// A request claims its key with a conditional put; the first one runs the route and stores the response,
+// retries get that response back. Records expire through the table's TTL attribute, and the completed
+// ones also sit in a per-container LRU, so a retry landing on the same container costs no DynamoDB call.
+class IdempotencyStore {
+    static final String EXPIRES_AT = "expiresAt";
+
+    // A claim left by a request that never finished (timeout, crash) can be taken over after this long;
+    // API Gateway gives up on the request after 29 seconds
+    private static final long LOCK_MILLIS = 30_000;
+
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String tableName;
+    private final long ttlMillis;
+    private final Map<String, Stored> recent;
+
+    IdempotencyStore(DynamoDbAsyncClient dynamoDb, String tableName, long ttlMillis, int cacheSize) {
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+        this.ttlMillis = ttlMillis;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Stored> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    // Keys are scoped to the route, the venue and the caller, so two users can never see each other's responses
+    static String recordId(String route, Venue venue, String subject, String key) {
+        return ReservationService.IDEMPOTENCY_PREFIX + route + "#" + venue.id() + "#" + subject + "#" + key;
+    }
+
+    // Hash of the body: a key reused for a different request is refused instead of replaying the wrong response
+    static String fingerprint(String body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((body != null ? body : "").getBytes(StandardCharsets.UTF_8));
+            return BASE64_URL.encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Claims the key for this request. Completes with null when the caller should run the route,
+    // or with the response to return instead: the stored one, 409 while another attempt is running,
+    // 422 when the key came with a different body
+    CompletableFuture<ApiResponse> claim(String id, String fingerprint) {
+        long now = System.currentTimeMillis();
+        Stored cached = cached(id, now);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.response(fingerprint));
+        }
+
+        Map<String, AttributeValue> record = new HashMap<>();
+        record.put("id", AttributeValue.fromS(id));
+        record.put("fingerprint", AttributeValue.fromS(fingerprint));
+        record.put("lockedUntil", DynamoItems.number(now + LOCK_MILLIS));
+        record.put(EXPIRES_AT, DynamoItems.number((now + ttlMillis) / 1000));
+
+        // TTL deletes expired records only eventually, so the condition treats them as absent
+        PutItemRequest request = PutItemRequest.builder()
+                .tableName(tableName)
+                .item(record)
+                .conditionExpression("attribute_not_exists(id) OR #e < :nowSeconds"
+                        + " OR (attribute_not_exists(statusCode) AND lockedUntil < :now)")
+                .expressionAttributeNames(Map.of("#e", EXPIRES_AT))
+                .expressionAttributeValues(Map.of(
+                        ":nowSeconds", DynamoItems.number(now / 1000),
+                        ":now", DynamoItems.number(now)))
+                .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                .build();
+
+        return dynamoDb.putItem(request)
+                .handle((written, error) -> {
+                    if (error == null) {
+                        return (ApiResponse) null;
+                    }
+                    Throwable cause = Futures.unwrap(error);
+                    if (!(cause instanceof ConditionalCheckFailedException)) {
+                        throw new CompletionException(cause);
+                    }
+                    // The record that failed the condition comes back with the error: no second read
+                    Map<String, AttributeValue> existing = ((ConditionalCheckFailedException) cause).item();
+                    if (existing == null || !DynamoItems.has(existing, "statusCode")) {
+                        return ResponseUtil.createResponse(409, "Запит із цим Idempotency-Key ще обробляється");
+                    }
+                    Stored stored = new Stored(DynamoItems.getString(existing, "fingerprint"),
+                            DynamoItems.getInt(existing, "statusCode"),
+                            DynamoItems.getString(existing, "body"),
+                            DynamoItems.getLong(existing, EXPIRES_AT) * 1000);
+                    remember(id, stored);
+                    return stored.response(fingerprint);
+                });
+    }
+
+    // Stores the route's response for later retries
+    CompletableFuture<Void> complete(String id, String fingerprint, ApiResponse response) {
+        String body;
+        try {
+            body = ResponseUtil.render(response.getBody());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        remember(id, new Stored(fingerprint, response.getStatusCode(), body, expiresAt));
+
+        Map<String, AttributeValue> record = new HashMap<>();
+        record.put("id", AttributeValue.fromS(id));
+        record.put("fingerprint", AttributeValue.fromS(fingerprint));
+        record.put("statusCode", DynamoItems.number(response.getStatusCode()));
+        record.put("body", AttributeValue.fromS(body));
+        record.put(EXPIRES_AT, DynamoItems.number(expiresAt / 1000));
+        return dynamoDb.putItem(PutItemRequest.builder().tableName(tableName).item(record).build())
+                .thenApply(written -> null);
+    }
+
+    // Drops an unfinished claim so that a retry can run the route again
+    CompletableFuture<Void> release(String id) {
+        return dynamoDb.deleteItem(DeleteItemRequest.builder()
+                        .tableName(tableName)
+                        .key(DynamoItems.key("id", id))
+                        .conditionExpression("attribute_not_exists(statusCode)")
+                        .build())
+                .handle((deleted, error) -> {
+                    if (error != null && !(Futures.unwrap(error) instanceof ConditionalCheckFailedException)) {
+                        Log.warn("Не вдалося зняти Idempotency-Key", "id", id, Futures.unwrap(error));
+                    }
+                    return (Void) null;
+                });
+    }
+
+    private Stored cached(String id, long now) {
+        synchronized (recent) {
+            Stored stored = recent.get(id);
+            if (stored != null && stored.expiresAtMillis <= now) {
+                recent.remove(id);
+                return null;
+            }
+            return stored;
+        }
+    }
+
+    private void remember(String id, Stored stored) {
+        synchronized (recent) {
+            recent.put(id, stored);
+        }
+    }
+
+    private static final class Stored {
+        final String fingerprint;
+        final int statusCode;
+        final String body;
+        final long expiresAtMillis;
+
+        Stored(String fingerprint, int statusCode, String body, long expiresAtMillis) {
+            this.fingerprint = fingerprint;
+            this.statusCode = statusCode;
+            this.body = body;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        ApiResponse response(String requestFingerprint) {
+            if (!fingerprint.equals(requestFingerprint)) {
+                return ResponseUtil.createResponse(422, "Idempotency-Key уже використано з іншим тілом запиту");
+            }
+            return ResponseUtil.replayed(statusCode, body);
+        }
+    }
+}
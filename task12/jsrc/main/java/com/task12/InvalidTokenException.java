@@ -0,0 +1,7 @@
+package com.task12;
+
+class InvalidTokenException extends RuntimeException {
+    InvalidTokenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,194 @@
+package com.task12;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// In-process verification of Cognito id tokens (RS256).
+// Keys come from the user pool JWKS (any URL, including file: for offline runs) and are refetched
+// when an unknown kid shows up, so key rotation needs no redeploy. Verified tokens are cached
+// until they expire, so a repeated token costs one map lookup.
+class JwtVerifier {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Base64.Decoder BASE64_URL = Base64.getUrlDecoder();
+    private static final long MIN_REFRESH_INTERVAL_MILLIS = 60_000;
+    private static final long CLOCK_SKEW_SECONDS = 30;
+    private static final int VERIFIED_CACHE_SIZE = 1024;
+
+    private final String jwksUrl;
+    private final String issuer;
+    private final String audience;
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+    // Last refresh for an unknown kid, successful or not
+    private volatile long keysRequestedAt;
+    private final Map<String, VerifiedToken> verified = new LinkedHashMap<String, VerifiedToken>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+            return size() > VERIFIED_CACHE_SIZE;
+        }
+    };
+
+    public JwtVerifier(String jwksUrl, String issuer, String audience) {
+        this.jwksUrl = jwksUrl;
+        this.issuer = issuer;
+        this.audience = audience;
+    }
+
+    static JwtVerifier forUserPool(String region, String userPoolId, String clientId) {
+        String issuer = "https://cognito-idp." + region + ".amazonaws.com/" + userPoolId;
+        String jwksUrl = System.getenv().getOrDefault("JWKS_URL", issuer + "/.well-known/jwks.json");
+        return new JwtVerifier(jwksUrl, issuer, clientId);
+    }
+
+    // Loads the key set ahead of the first request
+    public void prime() throws IOException {
+        refreshKeys();
+    }
+
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new InvalidTokenException("Відсутній токен");
+        }
+        long nowSeconds = System.currentTimeMillis() / 1000;
+
+        VerifiedToken cached;
+        synchronized (verified) {
+            cached = verified.get(token);
+        }
+        if (cached != null) {
+            if (cached.getExpiresAt() + CLOCK_SKEW_SECONDS > nowSeconds) {
+                return cached;
+            }
+            throw new InvalidTokenException("Термін дії токена минув");
+        }
+
+        VerifiedToken fresh = verifySignatureAndClaims(token, nowSeconds);
+        synchronized (verified) {
+            verified.put(token, fresh);
+        }
+        return fresh;
+    }
+
+    private VerifiedToken verifySignatureAndClaims(String token, long nowSeconds) {
+        int firstDot = token.indexOf('.');
+        int secondDot = token.indexOf('.', firstDot + 1);
+        if (firstDot < 0 || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            throw new InvalidTokenException("Невірний формат токена");
+        }
+
+        JsonNode header;
+        JsonNode claims;
+        byte[] signature;
+        try {
+            header = objectMapper.readTree(BASE64_URL.decode(token.substring(0, firstDot)));
+            claims = objectMapper.readTree(BASE64_URL.decode(token.substring(firstDot + 1, secondDot)));
+            signature = BASE64_URL.decode(token.substring(secondDot + 1));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new InvalidTokenException("Невірний формат токена");
+        }
+
+        if (!"RS256".equals(header.path("alg").asText())) {
+            throw new InvalidTokenException("Непідтримуваний алгоритм підпису");
+        }
+        PublicKey key = findKey(header.path("kid").asText());
+        try {
+            Signature verifier = Signature.getInstance("SHA256withRSA");
+            verifier.initVerify(key);
+            verifier.update(token.substring(0, secondDot).getBytes(StandardCharsets.US_ASCII));
+            if (!verifier.verify(signature)) {
+                throw new InvalidTokenException("Невірний підпис токена");
+            }
+        } catch (GeneralSecurityException e) {
+            throw new InvalidTokenException("Невірний підпис токена");
+        }
+
+        long expiresAt = claims.path("exp").asLong(0);
+        if (expiresAt + CLOCK_SKEW_SECONDS <= nowSeconds) {
+            throw new InvalidTokenException("Термін дії токена минув");
+        }
+        if (!issuer.equals(claims.path("iss").asText())) {
+            throw new InvalidTokenException("Невірний видавець токена");
+        }
+        if (!audience.equals(claims.path("aud").asText())) {
+            throw new InvalidTokenException("Невірна аудиторія токена");
+        }
+        if (!"id".equals(claims.path("token_use").asText())) {
+            throw new InvalidTokenException("Очікується id-токен");
+        }
+        List<String> groups = new ArrayList<>();
+        for (JsonNode group : claims.path("cognito:groups")) {
+            groups.add(group.asText());
+        }
+        return new VerifiedToken(claims.path("sub").asText(), claims.path("email").asText(null), List.copyOf(groups), expiresAt);
+    }
+
+    private PublicKey findKey(String kid) {
+        PublicKey key = keys.get(kid);
+        if (key != null) {
+            return key;
+        }
+        // Невідомий kid: можливо, пул повернув ключі — перечитуємо JWKS, але не частіше за інтервал.
+        // Спробу фіксуємо до запиту: під час збою JWKS токени з вигаданим kid інакше чекали б тайм-аути щоразу
+        synchronized (this) {
+            key = keys.get(kid);
+            long now = System.currentTimeMillis();
+            if (key == null && now - keysRequestedAt >= MIN_REFRESH_INTERVAL_MILLIS) {
+                keysRequestedAt = now;
+                try {
+                    refreshKeys();
+                } catch (IOException e) {
+                    throw new InvalidTokenException("Не вдалося завантажити JWKS: " + e.getMessage());
+                }
+                key = keys.get(kid);
+            }
+        }
+        if (key == null) {
+            throw new InvalidTokenException("Невідомий ключ підпису");
+        }
+        return key;
+    }
+
+    private synchronized void refreshKeys() throws IOException {
+        URLConnection connection = new URL(jwksUrl).openConnection();
+        connection.setConnectTimeout(2000);
+        connection.setReadTimeout(2000);
+        JsonNode jwks;
+        try (InputStream in = connection.getInputStream()) {
+            jwks = objectMapper.readTree(in);
+        }
+
+        Map<String, PublicKey> loaded = new HashMap<>();
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+            for (JsonNode jwk : jwks.path("keys")) {
+                if (!"RSA".equals(jwk.path("kty").asText())) {
+                    continue;
+                }
+                BigInteger modulus = new BigInteger(1, BASE64_URL.decode(jwk.path("n").asText()));
+                BigInteger exponent = new BigInteger(1, BASE64_URL.decode(jwk.path("e").asText()));
+                loaded.put(jwk.path("kid").asText(), keyFactory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IOException("Invalid JWKS: " + e.getMessage(), e);
+        }
+        keys = Map.copyOf(loaded);
+    }
+}
@@ -0,0 +1,190 @@
+package com.task12;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Leveled JSON-lines logging for the booking handlers.
+// The level comes from LOG_LEVEL; a LOG_DEBUG_SAMPLE_RATE fraction of invocations logs at DEBUG
+// regardless. A suppressed call is one int comparison: messages are constants or suppliers and
+// fields go through fixed-arity overloads, so nothing is built unless the line is written.
+// Request id and sampled level belong to the invocation's thread, so concurrent invocations (LoadDriver's
+// workers) tag their own lines; lines from SDK callback threads go out untagged at the configured level.
+// Lines are written on the caller into a shared buffer; flush() at the end of an invocation writes it
+// out before Lambda freezes the container, without waiting on anything else.
+final class Log {
+    enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final Level CONFIGURED = parseLevel(System.getenv("LOG_LEVEL"));
+    private static final double DEBUG_SAMPLE_RATE = parseRate(System.getenv("LOG_DEBUG_SAMPLE_RATE"));
+    private static final JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+    private static final OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 64 * 1024);
+
+    private static final Invocation NONE = new Invocation(null, CONFIGURED.ordinal());
+    private static final ThreadLocal<Invocation> current = ThreadLocal.withInitial(() -> NONE);
+
+    private Log() {
+    }
+
+    // Starts an invocation on this thread: tags its lines with the request id and decides whether it is debug-sampled
+    static void beginInvocation(String awsRequestId) {
+        boolean sampled = DEBUG_SAMPLE_RATE > 0 && ThreadLocalRandom.current().nextDouble() < DEBUG_SAMPLE_RATE;
+        current.set(new Invocation(awsRequestId, sampled ? Level.DEBUG.ordinal() : CONFIGURED.ordinal()));
+    }
+
+    static boolean isEnabled(Level level) {
+        return level.ordinal() >= current.get().threshold;
+    }
+
+    static void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            write(Level.DEBUG, message.get(), null, null, null, null, null);
+        }
+    }
+
+    static void debug(String message, String key, Object value) {
+        if (isEnabled(Level.DEBUG)) {
+            write(Level.DEBUG, message, key, value, null, null, null);
+        }
+    }
+
+    static void debug(String message, String key1, Object value1, String key2, Object value2) {
+        if (isEnabled(Level.DEBUG)) {
+            write(Level.DEBUG, message, key1, value1, key2, value2, null);
+        }
+    }
+
+    static void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, message, null, null, null, null, null);
+        }
+    }
+
+    static void info(String message, String key, Object value) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, message, key, value, null, null, null);
+        }
+    }
+
+    static void info(String message, String key1, Object value1, String key2, Object value2) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, message, key1, value1, key2, value2, null);
+        }
+    }
+
+    // For call sites that pick the level at runtime; guard with isEnabled to skip boxing the values
+    static void log(Level level, String message, String key1, Object value1, String key2, Object value2) {
+        if (isEnabled(level)) {
+            write(level, message, key1, value1, key2, value2, null);
+        }
+    }
+
+    static void warn(String message, String key, Object value) {
+        if (isEnabled(Level.WARN)) {
+            write(Level.WARN, message, key, value, null, null, null);
+        }
+    }
+
+    static void warn(String message, String key, Object value, Throwable error) {
+        if (isEnabled(Level.WARN)) {
+            write(Level.WARN, message, key, value, null, null, error);
+        }
+    }
+
+    static void error(String message, String key, Object value, Throwable error) {
+        if (isEnabled(Level.ERROR)) {
+            write(Level.ERROR, message, key, value, null, null, error);
+        }
+    }
+
+    // Writes out the buffered lines: one write to stdout per invocation
+    static void flush() {
+        synchronized (out) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                // stdout is gone; nothing sensible left to do with the lines
+            }
+        }
+    }
+
+    private static void write(Level level, String message, String key1, Object value1,
+                              String key2, Object value2, Throwable error) {
+        StringBuilder line = new StringBuilder(128);
+        line.append("{\"level\":\"").append(level).append("\",\"ts\":").append(System.currentTimeMillis());
+        String currentRequest = current.get().requestId;
+        if (currentRequest != null) {
+            appendField(line, "requestId", currentRequest);
+        }
+        appendField(line, "msg", message);
+        if (key1 != null) {
+            appendField(line, key1, value1);
+        }
+        if (key2 != null) {
+            appendField(line, key2, value2);
+        }
+        if (error != null) {
+            appendField(line, "error", error.getClass().getSimpleName() + ": " + error.getMessage());
+        }
+        line.append("}\n");
+
+        byte[] rendered = line.toString().getBytes(StandardCharsets.UTF_8);
+        synchronized (out) {
+            try {
+                out.write(rendered);
+            } catch (IOException e) {
+                // stdout is gone; nothing sensible left to do with the line
+            }
+        }
+    }
+
+    private static void appendField(StringBuilder line, String key, Object value) {
+        line.append(",\"").append(encoder.quoteAsString(key)).append("\":");
+        if (value == null) {
+            line.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            line.append(value);
+        } else {
+            line.append('"').append(encoder.quoteAsString(value.toString())).append('"');
+        }
+    }
+
+    private static Level parseLevel(String level) {
+        if (level == null || level.isEmpty()) {
+            return Level.INFO;
+        }
+        try {
+            return Level.valueOf(level.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+
+    private static double parseRate(String rate) {
+        if (rate == null || rate.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Math.min(1, Double.parseDouble(rate)));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static final class Invocation {
+        final String requestId;
+        final int threshold;
+
+        Invocation(String requestId, int threshold) {
+            this.requestId = requestId;
+            this.threshold = threshold;
+        }
+    }
+}
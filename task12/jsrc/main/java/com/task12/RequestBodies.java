@@ -0,0 +1,34 @@
+package com.task12;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+// Precompiled readers for the typed request bodies.
+// Blackbird generates the property accessors once, and type mismatches (strings for numbers or
+// booleans, fractions, out-of-range longs) fail during binding instead of as ClassCastException later:
+// scalar coercion, which Jackson allows by default, is off.
+// A native image cannot define classes at run time, so there the accessors stay reflective
+// (reflect-config.json under META-INF/native-image lists the body classes).
+final class RequestBodies {
+    private static final ObjectMapper objectMapper = accessors(new ObjectMapper())
+            .configure(MapperFeature.ALLOW_COERCION_OF_SCALARS, false)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(DeserializationFeature.ACCEPT_FLOAT_AS_INT, false);
+
+    static final ObjectReader SIGNUP = objectMapper.readerFor(SignupRequest.class);
+    static final ObjectReader SIGNIN = objectMapper.readerFor(SigninRequest.class);
+    static final ObjectReader TABLE = objectMapper.readerFor(TableRequest.class);
+    static final ObjectReader RESERVATION = objectMapper.readerFor(ReservationRequest.class);
+    static final ObjectReader RESERVATION_BATCH = objectMapper.readerForListOf(ReservationRequest.class);
+    static final ObjectReader QUEUED_RESERVATION = objectMapper.readerFor(QueuedReservation.class);
+
+    private RequestBodies() {
+    }
+
+    private static ObjectMapper accessors(ObjectMapper mapper) {
+        return NativeBootstrap.IN_IMAGE ? mapper : mapper.registerModule(new BlackbirdModule());
+    }
+}
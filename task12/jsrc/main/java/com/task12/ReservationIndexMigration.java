@@ -0,0 +1,175 @@
+package com.task12;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One-off backfill for reservations created before the current booking model, all of which belong to the
+ * default venue: sets the {@code tableDate} key used by the {@code tableDate-index} GSI and the venue keys of
+ * {@code venueDate-index} and {@code venueShard-index}, writes the slot-lock items that make later overlapping
+ * bookings fail their conditional write, and merges the reservations into the per-table-day occupancy bitmaps
+ * read by {@code GET /availability}. Reservations that already carry a venue keep their locks and bits in that
+ * venue's keys. With {@code TABLES_TABLE} set, tables without a venue are assigned to the default one as well.
+ * Existing keys and locks are left alone and bitmaps are only OR-ed into, so it is safe to run more than once.
+ * <p>
+ * Usage: {@code REGION=eu-west-1 RESERVATIONS_TABLE=... [TABLES_TABLE=...] [DEFAULT_VENUE=main] [VENUE_SHARDS=main=4]
+ * java -cp task12-1.0.0.jar com.task12.ReservationIndexMigration}
+ */
+public class ReservationIndexMigration {
+
+    public static void main(String[] args) {
+        String region = System.getenv("REGION");
+        String reservationsTableName = System.getenv("RESERVATIONS_TABLE");
+        String tablesTableName = System.getenv("TABLES_TABLE");
+        Venue defaultVenue = Venue.defaultVenue();
+
+        try (DynamoDbClient dynamoDb = DynamoDbClient.builder().region(Region.of(region)).build()) {
+            ScanRequest reservations = ScanRequest.builder()
+                    .tableName(reservationsTableName)
+                    .filterExpression(ReservationService.NOT_INTERNAL_ITEM)
+                    .projectionExpression("id, tableNumber, #d, slotTimeStart, slotTimeEnd, #v")
+                    .expressionAttributeNames(Map.of("#v", Venue.VENUE_KEY, "#d", "date"))
+                    .expressionAttributeValues(Map.of(":internal", AttributeValue.fromS(ReservationService.INTERNAL_ID_PREFIX)))
+                    .build();
+
+            int updated = 0;
+            int locked = 0;
+            Map<String, long[]> occupancy = new HashMap<>();
+            for (Map<String, AttributeValue> item : dynamoDb.scanPaginator(reservations).items()) {
+                String id = DynamoItems.getString(item, "id");
+                int tableNumber = DynamoItems.getInt(item, "tableNumber");
+                String date = DynamoItems.getString(item, "date");
+                // Бронювання інших закладів вже мають свій заклад: їхні замки й біти лишаються в його ключах
+                boolean tagged = DynamoItems.has(item, Venue.VENUE_KEY);
+                Venue venue = tagged ? Venue.resolve(DynamoItems.getString(item, Venue.VENUE_KEY)) : defaultVenue;
+
+                if (!tagged) {
+                    try {
+                        dynamoDb.updateItem(UpdateItemRequest.builder()
+                                .tableName(reservationsTableName)
+                                .key(DynamoItems.key("id", id))
+                                .updateExpression("SET #td = if_not_exists(#td, :td), #v = :v, #vd = :vd, #vs = :vs")
+                                .conditionExpression("attribute_not_exists(#v)")
+                                .expressionAttributeNames(Map.of(
+                                        "#td", ReservationService.TABLE_DATE_KEY,
+                                        "#v", Venue.VENUE_KEY,
+                                        "#vd", Venue.VENUE_DATE_KEY,
+                                        "#vs", Venue.VENUE_SHARD_KEY))
+                                .expressionAttributeValues(Map.of(
+                                        ":td", AttributeValue.fromS(venue.tableDateKey(tableNumber, date)),
+                                        ":v", AttributeValue.fromS(venue.id()),
+                                        ":vd", AttributeValue.fromS(venue.dayKey(tableNumber, date)),
+                                        ":vs", AttributeValue.fromS(venue.shardKey(tableNumber))))
+                                .build());
+                        updated++;
+                    } catch (ConditionalCheckFailedException e) {
+                        // set concurrently
+                    }
+                }
+
+                for (String lockId : ReservationService.slotLockIds(venue, tableNumber, date,
+                        DynamoItems.getString(item, "slotTimeStart"), DynamoItems.getString(item, "slotTimeEnd"))) {
+                    try {
+                        dynamoDb.putItem(PutItemRequest.builder()
+                                .tableName(reservationsTableName)
+                                .item(Map.of("id", AttributeValue.fromS(lockId), "reservationId", AttributeValue.fromS(id)))
+                                .conditionExpression("attribute_not_exists(id)")
+                                .build());
+                        locked++;
+                    } catch (ConditionalCheckFailedException e) {
+                        // Already locked: by this reservation on an earlier run, or by an overlapping legacy booking
+                    }
+                }
+
+                long[] bits = SlotBitmap.mask(
+                        ReservationService.timeToMinutes(DynamoItems.getString(item, "slotTimeStart")),
+                        ReservationService.timeToMinutes(DynamoItems.getString(item, "slotTimeEnd")));
+                occupancy.merge(venue.id() + "|" + tableNumber + "|" + date, bits, SlotBitmap::union);
+            }
+
+            for (Map.Entry<String, long[]> day : occupancy.entrySet()) {
+                String[] venueTableAndDate = day.getKey().split("\\|");
+                mergeOccupancy(dynamoDb, reservationsTableName, Venue.resolve(venueTableAndDate[0]),
+                        Integer.parseInt(venueTableAndDate[1]), venueTableAndDate[2], day.getValue());
+            }
+
+            System.out.println("Backfilled " + updated + " reservation keys, " + locked + " slot locks and "
+                    + occupancy.size() + " occupancy bitmaps in " + reservationsTableName);
+
+            if (tablesTableName != null) {
+                System.out.println("Assigned " + assignTables(dynamoDb, tablesTableName, defaultVenue)
+                        + " tables to venue " + defaultVenue.id() + " in " + tablesTableName);
+            }
+        }
+    }
+
+    // Tables created before venues existed go to the default venue, whose table ids are unprefixed
+    private static int assignTables(DynamoDbClient dynamoDb, String tableName, Venue venue) {
+        ScanRequest tables = ScanRequest.builder()
+                .tableName(tableName)
+                .filterExpression("attribute_not_exists(#v) AND " + ReservationService.NOT_INTERNAL_ITEM)
+                .projectionExpression("id")
+                .expressionAttributeNames(Map.of("#v", Venue.VENUE_KEY))
+                .expressionAttributeValues(Map.of(":internal", AttributeValue.fromS(ReservationService.INTERNAL_ID_PREFIX)))
+                .build();
+        int assigned = 0;
+        for (Map<String, AttributeValue> item : dynamoDb.scanPaginator(tables).items()) {
+            try {
+                dynamoDb.updateItem(UpdateItemRequest.builder()
+                        .tableName(tableName)
+                        .key(DynamoItems.key("id", DynamoItems.getString(item, "id")))
+                        .updateExpression("SET #v = :v")
+                        .conditionExpression("attribute_not_exists(#v)")
+                        .expressionAttributeNames(Map.of("#v", Venue.VENUE_KEY))
+                        .expressionAttributeValues(Map.of(":v", AttributeValue.fromS(venue.id())))
+                        .build());
+                assigned++;
+            } catch (ConditionalCheckFailedException e) {
+                // set concurrently
+            }
+        }
+        return assigned;
+    }
+
+    // OR-s the bits into the stored bitmap; the version condition retries around concurrent bookings
+    private static void mergeOccupancy(DynamoDbClient dynamoDb, String tableName, Venue venue, int tableNumber, String date, long[] bits) {
+        String id = ReservationService.occupancyId(venue, tableNumber, date);
+        while (true) {
+            Map<String, AttributeValue> stored = dynamoDb.getItem(GetItemRequest.builder()
+                    .tableName(tableName)
+                    .key(DynamoItems.key("id", id))
+                    .consistentRead(true)
+                    .build()).item();
+            boolean exists = stored != null && DynamoItems.has(stored, ReservationService.OCCUPANCY_BITS);
+            long version = exists ? DynamoItems.getLong(stored, "version") : 0;
+            long[] merged = exists
+                    ? SlotBitmap.union(SlotBitmap.fromBytes(stored.get(ReservationService.OCCUPANCY_BITS).b().asByteArray()), bits)
+                    : bits;
+
+            // Повний запис: бітмап старого формату отримує ключ дня закладу
+            Map<String, AttributeValue> item = ReservationService.occupancyItem(venue, tableNumber, date, merged, version + 1);
+            PutItemRequest.Builder put = PutItemRequest.builder().tableName(tableName).item(item);
+            if (exists) {
+                put.conditionExpression("version = :version")
+                        .expressionAttributeValues(Map.of(":version", DynamoItems.number(version)));
+            } else {
+                put.conditionExpression("attribute_not_exists(id)");
+            }
+            try {
+                dynamoDb.putItem(put.build());
+                return;
+            } catch (ConditionalCheckFailedException e) {
+                // changed since it was read
+            }
+        }
+    }
+}
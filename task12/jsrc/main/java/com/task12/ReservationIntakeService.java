@@ -0,0 +1,122 @@
+package com.task12;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// Queued intake for POST /reservations (ASYNC_RESERVATIONS=true). The API checks what it can without
+// DynamoDB (the payload and the cached table catalogue), puts the request on the intake queue and answers
+// 202 with the reservation id; ReservationIntakeHandler books the queued requests in batches.
+// GET /reservations/{reservationId}/status tells the outcome: the reservation item itself means confirmed,
+// an "#intake#" record left by the consumer means rejected, and neither means the request is still queued.
+class ReservationIntakeService {
+    static final String PENDING = "pending";
+    static final String CONFIRMED = "confirmed";
+    static final String REJECTED = "rejected";
+
+    private final SqsAsyncClient sqs;
+    private final String queueName;
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String reservationsTableName;
+    private final TableCatalogs tableCatalogs;
+    private volatile CompletableFuture<String> queueUrl;
+
+    public ReservationIntakeService(SqsAsyncClient sqs, String queueName, DynamoDbAsyncClient dynamoDb,
+                                    String reservationsTableName, TableCatalogs tableCatalogs) {
+        this.sqs = sqs;
+        this.queueName = queueName;
+        this.dynamoDb = dynamoDb;
+        this.reservationsTableName = reservationsTableName;
+        this.tableCatalogs = tableCatalogs;
+    }
+
+    public CompletableFuture<ApiResponse> enqueue(Venue venue, ReservationRequest reservationData) {
+        String validationError = ValidationUtil.validateReservation(reservationData);
+        if (validationError != null) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, validationError));
+        }
+
+        return tableCatalogs.of(venue).currentAsync().thenCompose(snapshot -> {
+            if (snapshot.findByNumber(reservationData.getTableNumber()) == null) {
+                return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Table not found"));
+            }
+
+            // Ідентифікатор видаємо одразу: споживач запише бронювання саме під ним
+            QueuedReservation message = new QueuedReservation();
+            message.setReservationId(UUID.randomUUID().toString());
+            message.setVenue(venue.id());
+            message.setReservation(reservationData);
+            String body;
+            try {
+                body = ResponseUtil.render(message);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return queueUrl()
+                    .thenCompose(url -> sqs.sendMessage(SendMessageRequest.builder().queueUrl(url).messageBody(body).build()))
+                    .thenApply(sent -> {
+                        Map<String, Object> responseBody = new LinkedHashMap<>();
+                        responseBody.put("reservationId", message.getReservationId());
+                        responseBody.put("status", PENDING);
+                        return ResponseUtil.createResponse(202, responseBody);
+                    });
+        });
+    }
+
+    public CompletableFuture<ApiResponse> status(String reservationId) {
+        if (reservationId == null || reservationId.isEmpty() || reservationId.startsWith(ReservationService.INTERNAL_ID_PREFIX)) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Невірний ідентифікатор бронювання"));
+        }
+
+        // Бронювання і запис про відмову читаються паралельно
+        CompletableFuture<Map<String, AttributeValue>> reservation = dynamoDb.getItem(GetItemRequest.builder()
+                        .tableName(reservationsTableName)
+                        .key(DynamoItems.key("id", reservationId))
+                        .projectionExpression("id")
+                        .build())
+                .thenApply(GetItemResponse::item);
+        CompletableFuture<Map<String, AttributeValue>> rejection = dynamoDb.getItem(GetItemRequest.builder()
+                        .tableName(reservationsTableName)
+                        .key(DynamoItems.key("id", ReservationService.INTAKE_PREFIX + reservationId))
+                        .build())
+                .thenApply(GetItemResponse::item);
+
+        return reservation.thenCombine(rejection, (booked, rejected) -> {
+            Map<String, Object> responseBody = new LinkedHashMap<>();
+            responseBody.put("reservationId", reservationId);
+            if (booked != null && DynamoItems.has(booked, "id")) {
+                responseBody.put("status", CONFIRMED);
+            } else if (rejected != null && DynamoItems.has(rejected, "reason")) {
+                responseBody.put("status", REJECTED);
+                responseBody.put("reason", DynamoItems.getString(rejected, "reason"));
+            } else {
+                responseBody.put("status", PENDING);
+            }
+            return ResponseUtil.createResponse(200, responseBody);
+        });
+    }
+
+    // Resolved once per container; a failed lookup is retried by the next request
+    private CompletableFuture<String> queueUrl() {
+        CompletableFuture<String> url = queueUrl;
+        if (url == null || url.isCompletedExceptionally()) {
+            url = sqs.getQueueUrl(GetQueueUrlRequest.builder().queueName(queueName).build())
+                    .thenApply(GetQueueUrlResponse::queueUrl);
+            queueUrl = url;
+        }
+        return url;
+    }
+}
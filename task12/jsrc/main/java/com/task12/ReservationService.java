@@ -0,0 +1,350 @@
+package com.task12;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+// Reservation Service
+class ReservationService {
+    static final String TABLE_DATE_INDEX = "tableDate-index";
+    static final String TABLE_DATE_KEY = "tableDate";
+    static final String OCCUPANCY_DATE_INDEX = "occupancyDate-index";
+    static final String OCCUPANCY_DATE_KEY = "occupancyDate";
+    static final String OCCUPANCY_BITS = "bits";
+    // Internal items share the reservations table under "#" ids:
+    // slot locks "#slot#<tableDate>#<quantum>", day bitmaps "#occupancy#<tableDate>",
+    // idempotency records "#idempotency#<route>#<venue>#<subject>#<key>" (see IdempotencyStore)
+    // and rejections of queued bookings "#intake#<reservationId>" (see ReservationIntakeHandler);
+    // tableDate is "<tableNumber>#<date>", prefixed with the venue outside the default one (see Venue)
+    static final String INTERNAL_ID_PREFIX = "#";
+    static final String SLOT_LOCK_PREFIX = "#slot#";
+    static final String OCCUPANCY_PREFIX = "#occupancy#";
+    static final String IDEMPOTENCY_PREFIX = "#idempotency#";
+    static final String INTAKE_PREFIX = "#intake#";
+    static final String NOT_INTERNAL_ITEM = "NOT begins_with(id, :internal)";
+    static final int SLOT_QUANTUM_MINUTES = 15;
+    static final int MAX_BOOKING_ATTEMPTS = 3;
+    // Cursor entry with the shard the listing stopped in; absent for the first shard
+    private static final String SHARD_CURSOR = "#shard";
+    // Attributes of the reservation view; "fields" can narrow them, nothing else is read back
+    static final List<String> VIEW_FIELDS = List.of("id", "tableNumber", "clientName", "phoneNumber", "date", "slotTimeStart", "slotTimeEnd");
+    private static final Map<String, String> VIEW_NAMES = new HashMap<>();
+    private static final String VIEW_PROJECTION = projection(VIEW_FIELDS, VIEW_NAMES);
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String reservationsTableName;
+    private final TableCatalogs tableCatalogs;
+
+    public ReservationService(DynamoDbAsyncClient dynamoDb, String reservationsTableName, TableCatalogs tableCatalogs) {
+        this.dynamoDb = dynamoDb;
+        this.reservationsTableName = reservationsTableName;
+        this.tableCatalogs = tableCatalogs;
+    }
+
+    public CompletableFuture<ApiResponse> getReservations(Venue venue, Map<String, String> queryParams) {
+        int limit;
+        Map<String, Object> cursor;
+        Integer tableNumber;
+        try {
+            limit = PageCursor.parseLimit(queryParams.get("limit"));
+            cursor = PageCursor.decode(queryParams.get("nextToken"));
+            tableNumber = queryParams.containsKey("tableNumber") ? Integer.valueOf(queryParams.get("tableNumber")) : null;
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, e.getMessage()));
+        }
+        String date = queryParams.get("date");
+        if (tableNumber != null && date == null) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Фільтр 'tableNumber' потребує параметра 'date'"));
+        }
+
+        // Лише поля подання: менше RCU і менша відповідь, ніж у повних елементів
+        Map<String, String> names = new HashMap<>(VIEW_NAMES);
+        String projection = VIEW_PROJECTION;
+        String fields = queryParams.get("fields");
+        if (fields != null) {
+            List<String> requested = new ArrayList<>();
+            for (String field : fields.split(",")) {
+                String name = field.trim();
+                if (!VIEW_FIELDS.contains(name)) {
+                    return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Невідоме поле: " + name));
+                }
+                if (!requested.contains(name)) {
+                    requested.add(name);
+                }
+            }
+            names.clear();
+            projection = projection(requested, names);
+        }
+
+        // Фільтри перетворюються на умову ключа індексу, а не на пост-фільтр; без фільтрів —
+        // запит до шардів закладу замість сканування всієї таблиці
+        if (tableNumber != null) {
+            return queryShards(TABLE_DATE_INDEX, TABLE_DATE_KEY, List.of(venue.tableDateKey(tableNumber, date)),
+                    names, projection, cursor, limit, new ArrayList<>());
+        }
+        if (date != null) {
+            return queryShards(Venue.VENUE_DATE_INDEX, Venue.VENUE_DATE_KEY, venue.dayKeys(date),
+                    names, projection, cursor, limit, new ArrayList<>());
+        }
+        return queryShards(Venue.VENUE_SHARD_INDEX, Venue.VENUE_SHARD_KEY, venue.shardKeys(),
+                names, projection, cursor, limit, new ArrayList<>());
+    }
+
+    // Reads the index partitions one after another until the page is full. The cursor is the last evaluated
+    // key plus the shard it belongs to, so a page of a sharded venue lists its reservations shard by shard
+    // rather than in one global order
+    private CompletableFuture<ApiResponse> queryShards(String indexName, String keyName, List<String> keys,
+                                                       Map<String, String> names, String projection,
+                                                       Map<String, Object> cursor, int limit,
+                                                       List<Map<String, AttributeValue>> items) {
+        Map<String, Object> startKey = cursor != null ? new LinkedHashMap<>(cursor) : new LinkedHashMap<>();
+        Object shardValue = startKey.remove(SHARD_CURSOR);
+        int shard = shardValue instanceof Number ? ((Number) shardValue).intValue() : 0;
+        if (shard < 0 || shard >= keys.size()) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Невірний параметр 'nextToken'"));
+        }
+
+        Map<String, String> queryNames = new HashMap<>(names);
+        queryNames.put("#k", keyName);
+        QueryRequest query = QueryRequest.builder()
+                .tableName(reservationsTableName)
+                .indexName(indexName)
+                .keyConditionExpression("#k = :k")
+                .projectionExpression(projection)
+                .expressionAttributeNames(queryNames)
+                .expressionAttributeValues(Map.of(":k", AttributeValue.fromS(keys.get(shard))))
+                .exclusiveStartKey(startKey.isEmpty() ? null : PageCursor.toExclusiveStartKey(startKey))
+                .limit(limit - items.size())
+                .build();
+        return dynamoDb.query(query)
+                .thenCompose(page -> {
+                    items.addAll(page.items());
+                    Map<String, Object> next = PageCursor.fromLastEvaluatedKey(page.lastEvaluatedKey());
+                    if (next.isEmpty() && shard + 1 < keys.size()) {
+                        next.put(SHARD_CURSOR, shard + 1);
+                        if (items.size() < limit) {
+                            return queryShards(indexName, keyName, keys, names, projection, next, limit, items);
+                        }
+                    } else if (!next.isEmpty() && shard > 0) {
+                        next.put(SHARD_CURSOR, shard);
+                    }
+                    return CompletableFuture.completedFuture(reservationsPage(items, PageCursor.encode(next)));
+                });
+    }
+
+    // Placeholders for every field, since "date" is a DynamoDB reserved word
+    private static String projection(List<String> fields, Map<String, String> names) {
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            names.put("#p" + i, fields.get(i));
+            expression.append(i == 0 ? "#p" : ", #p").append(i);
+        }
+        return expression.toString();
+    }
+
+    private ApiResponse reservationsPage(List<Map<String, AttributeValue>> items, String nextToken) {
+        JsonBody body = generator -> {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("reservations");
+            for (Map<String, AttributeValue> item : items) {
+                DynamoItems.writeItem(generator, item, null);
+            }
+            generator.writeEndArray();
+            if (nextToken != null) {
+                generator.writeStringField("nextToken", nextToken);
+            }
+            generator.writeEndObject();
+        };
+        return ResponseUtil.createResponse(200, body);
+    }
+
+    public CompletableFuture<ApiResponse> createReservation(Venue venue, ReservationRequest reservationData) {
+        String validationError = ValidationUtil.validateReservation(reservationData);
+        if (validationError != null) {
+            return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, validationError));
+        }
+
+        return book(venue, reservationData, 1);
+    }
+
+    // One booking attempt: the occupancy bitmap rejects obvious overlaps without writing, and the
+    // transaction writes the reservation, its slot locks and the new bitmap (guarded by its version)
+    private CompletableFuture<ApiResponse> book(Venue venue, ReservationRequest reservationData, int attempt) {
+        int tableNumber = reservationData.getTableNumber();
+        String date = reservationData.getDate();
+        String newStart = reservationData.getSlotTimeStart();
+        String newEnd = reservationData.getSlotTimeEnd();
+
+        // Перевірка столу і читання зайнятості дня не залежать одна від одної, тож ідуть паралельно
+        CompletableFuture<TableCatalog.Snapshot> catalog = tableCatalogs.of(venue).currentAsync();
+        CompletableFuture<Map<String, AttributeValue>> occupancy = dynamoDb.getItem(GetItemRequest.builder()
+                        .tableName(reservationsTableName)
+                        .key(DynamoItems.key("id", occupancyId(venue, tableNumber, date)))
+                        .consistentRead(true)
+                        .build())
+                .thenApply(GetItemResponse::item);
+
+        return catalog.thenCompose(snapshot -> occupancy.thenCompose(occupancyItem -> {
+            // Verify table exists
+            if (snapshot.findByNumber(tableNumber) == null) {
+                return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Table not found"));
+            }
+
+            boolean occupied = occupancyItem != null && DynamoItems.has(occupancyItem, OCCUPANCY_BITS);
+            long[] booked = occupied ? SlotBitmap.fromBytes(occupancyItem.get(OCCUPANCY_BITS).b().asByteArray()) : SlotBitmap.empty();
+            long version = occupied ? DynamoItems.getLong(occupancyItem, "version") : 0;
+            long[] requested = SlotBitmap.mask(timeToMinutes(newStart), timeToMinutes(newEnd));
+            if (SlotBitmap.intersects(booked, requested)) {
+                return CompletableFuture.completedFuture(ResponseUtil.createResponse(400, "Reservation overlaps with an existing reservation"));
+            }
+
+            // Create new reservation
+            String reservationId = UUID.randomUUID().toString();
+            Map<String, AttributeValue> reservation = reservationItem(venue, reservationId, reservationData);
+
+            // Бронювання, замки всіх його квантів і новий бітмап дня пишуться однією транзакцією:
+            // зайнятий квант провалює умову, і жодного сканування чи гонки між перевіркою та записом немає
+            List<TransactWriteItem> writes = new ArrayList<>();
+            writes.add(TransactWriteItem.builder()
+                    .put(Put.builder().tableName(reservationsTableName).item(reservation).build())
+                    .build());
+            for (String lockId : slotLockIds(venue, tableNumber, date, newStart, newEnd)) {
+                writes.add(TransactWriteItem.builder()
+                        .put(Put.builder()
+                                .tableName(reservationsTableName)
+                                .item(slotLockItem(lockId, reservationId))
+                                .conditionExpression("attribute_not_exists(id)")
+                                .build())
+                        .build());
+            }
+            writes.add(TransactWriteItem.builder()
+                    .put(occupancyPut(venue, tableNumber, date, SlotBitmap.union(booked, requested), version))
+                    .build());
+
+            return dynamoDb.transactWriteItems(TransactWriteItemsRequest.builder().transactItems(writes).build())
+                    .handle((written, error) -> {
+                        if (error == null) {
+                            Map<String, Object> responseBody = new HashMap<>();
+                            responseBody.put("reservationId", reservationId);
+                            return CompletableFuture.completedFuture(ResponseUtil.createResponse(200, responseBody));
+                        }
+                        Throwable cause = Futures.unwrap(error);
+                        if (cause instanceof TransactionCanceledException) {
+                            if (isSlotTaken((TransactionCanceledException) cause, writes.size())) {
+                                return CompletableFuture.completedFuture(
+                                        ResponseUtil.createResponse(400, "Reservation overlaps with an existing reservation"));
+                            }
+                            // Бітмап змінило інше бронювання цього столу на цей день: перечитуємо і пробуємо знову
+                            if (attempt < MAX_BOOKING_ATTEMPTS) {
+                                return book(venue, reservationData, attempt + 1);
+                            }
+                        }
+                        throw new CompletionException(cause);
+                    })
+                    .thenCompose(Function.identity());
+        }));
+    }
+
+    // Writes the table-day bitmap, failing if someone else wrote it since it was read
+    private Put occupancyPut(Venue venue, int tableNumber, String date, long[] bits, long readVersion) {
+        Put.Builder put = Put.builder()
+                .tableName(reservationsTableName)
+                .item(occupancyItem(venue, tableNumber, date, bits, readVersion + 1));
+        if (readVersion == 0) {
+            put.conditionExpression("attribute_not_exists(id)");
+        } else {
+            put.conditionExpression("version = :version")
+                    .expressionAttributeValues(Map.of(":version", DynamoItems.number(readVersion)));
+        }
+        return put.build();
+    }
+
+    static Map<String, AttributeValue> reservationItem(Venue venue, String reservationId, ReservationRequest reservationData) {
+        int tableNumber = reservationData.getTableNumber();
+        Map<String, AttributeValue> reservation = new HashMap<>();
+        reservation.put("id", AttributeValue.fromS(reservationId));
+        reservation.put("tableNumber", DynamoItems.number(tableNumber));
+        if (reservationData.getClientName() != null) {
+            reservation.put("clientName", AttributeValue.fromS(reservationData.getClientName()));
+        }
+        if (reservationData.getPhoneNumber() != null) {
+            reservation.put("phoneNumber", AttributeValue.fromS(reservationData.getPhoneNumber()));
+        }
+        reservation.put("date", AttributeValue.fromS(reservationData.getDate()));
+        reservation.put("slotTimeStart", AttributeValue.fromS(reservationData.getSlotTimeStart()));
+        reservation.put("slotTimeEnd", AttributeValue.fromS(reservationData.getSlotTimeEnd()));
+        reservation.put(TABLE_DATE_KEY, AttributeValue.fromS(venue.tableDateKey(tableNumber, reservationData.getDate())));
+        reservation.put(Venue.VENUE_KEY, AttributeValue.fromS(venue.id()));
+        reservation.put(Venue.VENUE_DATE_KEY, AttributeValue.fromS(venue.dayKey(tableNumber, reservationData.getDate())));
+        reservation.put(Venue.VENUE_SHARD_KEY, AttributeValue.fromS(venue.shardKey(tableNumber)));
+        return reservation;
+    }
+
+    static Map<String, AttributeValue> slotLockItem(String lockId, String reservationId) {
+        return Map.of("id", AttributeValue.fromS(lockId), "reservationId", AttributeValue.fromS(reservationId));
+    }
+
+    static Map<String, AttributeValue> occupancyItem(Venue venue, int tableNumber, String date, long[] bits, long version) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("id", AttributeValue.fromS(occupancyId(venue, tableNumber, date)));
+        item.put(OCCUPANCY_DATE_KEY, AttributeValue.fromS(venue.dayKey(tableNumber, date)));
+        item.put("tableNumber", DynamoItems.number(tableNumber));
+        item.put(OCCUPANCY_BITS, AttributeValue.fromB(SdkBytes.fromByteArray(SlotBitmap.toBytes(bits))));
+        item.put("version", DynamoItems.number(version));
+        return item;
+    }
+
+    // Ids of the lock items for every quantum the slot touches. Quanta are coarse on purpose:
+    // two slots sharing a quantum conflict even if their exact minutes do not overlap
+    static List<String> slotLockIds(Venue venue, int tableNumber, String date, String slotTimeStart, String slotTimeEnd) {
+        int first = timeToMinutes(slotTimeStart) / SLOT_QUANTUM_MINUTES;
+        int last = (timeToMinutes(slotTimeEnd) - 1) / SLOT_QUANTUM_MINUTES;
+        String prefix = SLOT_LOCK_PREFIX + venue.tableDateKey(tableNumber, date) + "#";
+        List<String> lockIds = new ArrayList<>(last - first + 1);
+        for (int quantum = first; quantum <= last; quantum++) {
+            lockIds.add(prefix + quantum);
+        }
+        return lockIds;
+    }
+
+    // Reasons follow the order of the writes: reservation, slot locks, then the occupancy bitmap
+    private static boolean isSlotTaken(TransactionCanceledException error, int writes) {
+        List<CancellationReason> reasons = error.cancellationReasons();
+        for (int i = 1; i < writes - 1 && i < reasons.size(); i++) {
+            if ("ConditionalCheckFailed".equals(reasons.get(i).code())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String occupancyId(Venue venue, int tableNumber, String date) {
+        return OCCUPANCY_PREFIX + venue.tableDateKey(tableNumber, date);
+    }
+
+    // Expects the validated H:mm / HH:mm form; no split or parse on this hot path
+    static int timeToMinutes(String time) {
+        int colon = time.indexOf(':');
+        int hours = colon == 1 ? time.charAt(0) - '0' : (time.charAt(0) - '0') * 10 + (time.charAt(1) - '0');
+        int minutes = (time.charAt(colon + 1) - '0') * 10 + (time.charAt(colon + 2) - '0');
+        return hours * 60 + minutes;
+    }
+}
@@ -0,0 +1,175 @@
+package com.task12;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Utility methods for responses
+class ResponseUtil {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectWriter bodyWriter = objectMapper.writer();
+    private static final JsonFactory jsonFactory = objectMapper.getFactory();
+
+    // Header sets are immutable and built once per container; responses share them instead of copying
+    // Кожна відповідь несе CORS-заголовки; preflight - лише їх, без тіла
+    private static final Map<String, String> HEADERS = Map.of(
+            "Content-Type", "application/json",
+            "Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key,X-Amz-Security-Token,Idempotency-Key,X-Venue-Id",
+            "Access-Control-Allow-Origin", "*",
+            "Access-Control-Allow-Methods", "*",
+            "Accept-Version", "*");
+    private static final Map<String, String> PREFLIGHT_HEADERS = Map.of(
+            "Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key,X-Amz-Security-Token,Idempotency-Key,X-Venue-Id",
+            "Access-Control-Allow-Origin", "*",
+            "Access-Control-Allow-Methods", "*",
+            "Access-Control-Max-Age", "600");
+
+    // The whole preflight response, serialized once
+    private static final byte[] PREFLIGHT = preflight();
+
+    // Headers of the last ETag; every response of one venue's catalogue snapshot carries the same tag
+    private static volatile EtagHeaders lastEtagHeaders = new EtagHeaders("", HEADERS);
+
+    private static final Map<String, String> REPLAYED_HEADERS = with(HEADERS, "Idempotent-Replayed", "true");
+
+    // Retry-After of 1..60 seconds, one header set each
+    private static final List<Map<String, String>> RETRY_AFTER_HEADERS = retryAfterHeaders(60);
+
+    public static ApiResponse createResponse(int statusCode, Object body) {
+        return new ApiResponse(statusCode, HEADERS, body);
+    }
+
+    static void writePreflight(OutputStream out) throws IOException {
+        out.write(PREFLIGHT);
+    }
+
+    // Writes the proxy response JSON straight to the Lambda output stream;
+    // the body is serialized once and embedded as a string, never re-encoded as part of a Map.
+    // Compression per Accept-Encoding is left to API Gateway (minimum_compression_size of the API)
+    public static void write(ApiResponse response, OutputStream out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeNumberField("statusCode", response.getStatusCode());
+            generator.writeObjectFieldStart("headers");
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                generator.writeStringField(header.getKey(), header.getValue());
+            }
+            generator.writeEndObject();
+            generator.writeStringField("body", render(response.getBody()));
+            generator.writeEndObject();
+        }
+    }
+
+    // Same response with an ETag header. The body depends on the venue header as well as the URL,
+    // so shared caches are told to key on it too
+    public static ApiResponse withEtag(ApiResponse response, String etag) {
+        EtagHeaders cached = lastEtagHeaders;
+        if (!cached.etag.equals(etag)) {
+            cached = new EtagHeaders(etag, with(with(response.getHeaders(), "ETag", etag), "Vary", Venue.HEADER));
+            lastEtagHeaders = cached;
+        }
+        return new ApiResponse(response.getStatusCode(), cached.headers, response.getBody());
+    }
+
+    // 429 for a client over its admission limit, telling it when to come back
+    public static ApiResponse tooManyRequests(long waitNanos) {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        Map<String, String> headers = seconds < RETRY_AFTER_HEADERS.size()
+                ? RETRY_AFTER_HEADERS.get((int) seconds)
+                : with(HEADERS, "Retry-After", String.valueOf(seconds));
+        return new ApiResponse(429, headers, "Забагато запитів, спробуйте пізніше");
+    }
+
+    // A stored response played back for a repeated Idempotency-Key
+    public static ApiResponse replayed(int statusCode, String body) {
+        return new ApiResponse(statusCode, REPLAYED_HEADERS, body);
+    }
+
+    // Index is the number of seconds; index 0 is unused
+    private static List<Map<String, String>> retryAfterHeaders(int maxSeconds) {
+        List<Map<String, String>> headers = new ArrayList<>(maxSeconds + 1);
+        headers.add(HEADERS);
+        for (int seconds = 1; seconds <= maxSeconds; seconds++) {
+            headers.add(with(HEADERS, "Retry-After", String.valueOf(seconds)));
+        }
+        return List.copyOf(headers);
+    }
+
+    private static Map<String, String> with(Map<String, String> headers, String name, String value) {
+        Map<String, String> copy = new HashMap<>(headers);
+        copy.put(name, value);
+        return Map.copyOf(copy);
+    }
+
+    // Strong ETag for a venue's catalogue version; versions of different venues are counted separately
+    public static String etag(Venue venue, long version) {
+        return "\"" + venue.id() + ":" + version + "\"";
+    }
+
+    // If-None-Match matches on "*" or any listed tag; weak tags compare by their opaque part
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static ApiResponse notModified(String etag) {
+        return withEtag(createResponse(304, ""), etag);
+    }
+
+    static String render(Object body) throws IOException {
+        if (body instanceof String) {
+            return (String) body;
+        }
+        if (body instanceof JsonBody) {
+            StringWriter writer = new StringWriter();
+            try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+                ((JsonBody) body).writeTo(generator);
+            }
+            return writer.toString();
+        }
+        return bodyWriter.writeValueAsString(body);
+    }
+
+    private static byte[] preflight() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(new ApiResponse(200, PREFLIGHT_HEADERS, ""), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static final class EtagHeaders {
+        final String etag;
+        final Map<String, String> headers;
+
+        EtagHeaders(String etag, Map<String, String> headers) {
+            this.etag = etag;
+            this.headers = headers;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.task12;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Per-container snapshot of one venue's tables catalogue.
+// The snapshot is rebuilt only when the venue's "#catalog" version item changes; the version
+// itself is re-read at most once per TTL, so most requests never touch DynamoDB.
+class TableCatalog {
+    static final String VERSION_ITEM_ID = "#catalog";
+
+    private final DynamoDbAsyncClient dynamoDb;
+    private final String tablesTableName;
+    private final Venue venue;
+    private final long ttlMillis;
+    private volatile Snapshot snapshot;
+    private CompletableFuture<Snapshot> refresh;
+
+    public TableCatalog(DynamoDbAsyncClient dynamoDb, String tablesTableName, Venue venue, long ttlMillis) {
+        this.dynamoDb = dynamoDb;
+        this.tablesTableName = tablesTableName;
+        this.venue = venue;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public Snapshot current() {
+        return currentAsync().join();
+    }
+
+    // Fresh snapshots complete immediately; concurrent callers share one in-flight refresh
+    public CompletableFuture<Snapshot> currentAsync() {
+        Snapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        if (current != null && now < current.checkAfter) {
+            return CompletableFuture.completedFuture(current);
+        }
+
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && now < current.checkAfter) {
+                return CompletableFuture.completedFuture(current);
+            }
+            CompletableFuture<Snapshot> inFlight = refresh;
+            if (inFlight == null) {
+                Snapshot previous = current;
+                // Версію читаємо до сканування: стіл, доданий після сканування, підніме її ще раз
+                inFlight = readVersion().thenCompose(version -> {
+                    long checkAfter = System.currentTimeMillis() + ttlMillis;
+                    if (previous != null && previous.version == version) {
+                        return CompletableFuture.completedFuture(previous.withCheckAfter(checkAfter));
+                    }
+                    return load(version, checkAfter);
+                });
+                refresh = inFlight;
+                inFlight.whenComplete((loaded, error) -> {
+                    synchronized (this) {
+                        if (loaded != null) {
+                            snapshot = loaded;
+                        }
+                        refresh = null;
+                    }
+                });
+            }
+            return inFlight;
+        }
+    }
+
+    // The version bump that goes into the same transaction as the write of a table
+    public Update versionBump() {
+        return Update.builder()
+                .tableName(tablesTableName)
+                .key(DynamoItems.key("id", venue.catalogItemId()))
+                .updateExpression("ADD version :one")
+                .expressionAttributeValues(Map.of(":one", DynamoItems.number(1)))
+                .build();
+    }
+
+    // Called after the transaction with versionBump() committed
+    public void tableCreated() {
+        snapshot = null;
+    }
+
+    private CompletableFuture<Long> readVersion() {
+        return dynamoDb.getItem(GetItemRequest.builder()
+                        .tableName(tablesTableName)
+                        .key(DynamoItems.key("id", venue.catalogItemId()))
+                        .consistentRead(true)
+                        .build())
+                .thenApply(response -> {
+                    Map<String, AttributeValue> item = response.item();
+                    return item != null && DynamoItems.has(item, "version") ? DynamoItems.getLong(item, "version") : 0L;
+                });
+    }
+
+    private CompletableFuture<Snapshot> load(long version, long checkAfter) {
+        List<TableRecord> records = new ArrayList<>();
+        // Лише столи цього закладу: запит до його розділу індексу, а не сканування всієї таблиці
+        QueryRequest query = QueryRequest.builder()
+                .tableName(tablesTableName)
+                .indexName(Venue.VENUE_INDEX)
+                .keyConditionExpression("#v = :v")
+                .expressionAttributeNames(Map.of("#v", Venue.VENUE_KEY))
+                .expressionAttributeValues(Map.of(":v", AttributeValue.fromS(venue.id())))
+                .build();
+        // Сторінки приходять послідовно, тож список не потребує синхронізації
+        return dynamoDb.queryPaginator(query).subscribe(page -> {
+            for (Map<String, AttributeValue> item : page.items()) {
+                records.add(TableRecord.fromItem(item));
+            }
+        }).thenApply(done -> {
+            TableRecord[] sorted = records.toArray(new TableRecord[0]);
+            Arrays.sort(sorted, Comparator.comparingInt(TableRecord::getId));
+            return new Snapshot(version, sorted, checkAfter);
+        });
+    }
+
+    static class Snapshot {
+        private static final int MAX_RENDERED = 256;
+
+        private final long version;
+        private final TableRecord[] sortedById;
+        private final List<TableRecord> byPlaces;
+        private final Map<Integer, TableRecord> byNumber;
+        private final List<Map<String, Object>> views;
+        private final Map<String, String> rendered;
+        private final long checkAfter;
+
+        Snapshot(long version, TableRecord[] sortedById, long checkAfter) {
+            this.version = version;
+            this.sortedById = sortedById;
+            this.checkAfter = checkAfter;
+
+            Map<Integer, TableRecord> numbers = new HashMap<>();
+            List<Map<String, Object>> tableViews = new ArrayList<>(sortedById.length);
+            for (TableRecord record : sortedById) {
+                numbers.put(record.getNumber(), record);
+                tableViews.add(record.getView());
+            }
+            this.byNumber = numbers;
+            this.views = Collections.unmodifiableList(tableViews);
+
+            TableRecord[] sortedByPlaces = sortedById.clone();
+            Arrays.sort(sortedByPlaces, Comparator.comparingInt(TableRecord::getPlaces).thenComparingInt(TableRecord::getId));
+            this.byPlaces = Collections.unmodifiableList(Arrays.asList(sortedByPlaces));
+            this.rendered = new ConcurrentHashMap<>();
+        }
+
+        private Snapshot(Snapshot source, long checkAfter) {
+            this.version = source.version;
+            this.sortedById = source.sortedById;
+            this.byPlaces = source.byPlaces;
+            this.byNumber = source.byNumber;
+            this.views = source.views;
+            this.rendered = source.rendered;
+            this.checkAfter = checkAfter;
+        }
+
+        Snapshot withCheckAfter(long checkAfter) {
+            return new Snapshot(this, checkAfter);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public TableRecord findById(int id) {
+            int low = 0;
+            int high = sortedById.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midId = sortedById[mid].getId();
+                if (midId < id) {
+                    low = mid + 1;
+                } else if (midId > id) {
+                    high = mid - 1;
+                } else {
+                    return sortedById[mid];
+                }
+            }
+            return null;
+        }
+
+        // Position of the first table with id greater than the given one
+        public int indexAfter(int id) {
+            int low = 0;
+            int high = sortedById.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortedById[mid].getId() <= id) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Tables seating at least the given party, smallest first
+        public List<TableRecord> withPlacesAtLeast(int places) {
+            int low = 0;
+            int high = byPlaces.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (byPlaces.get(mid).getPlaces() < places) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return byPlaces.subList(low, byPlaces.size());
+        }
+
+        public TableRecord findByNumber(int number) {
+            return byNumber.get(number);
+        }
+
+        // JSON of a response body for this version, rendered once per key; dropped with the snapshot
+        public String rendered(String key, Supplier<Object> body) {
+            String cached = rendered.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            String json;
+            try {
+                json = ResponseUtil.render(body.get());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (rendered.size() < MAX_RENDERED) {
+                rendered.put(key, json);
+            }
+            return json;
+        }
+
+        // Table views sorted by id, ready to be serialized
+        public List<Map<String, Object>> views() {
+            return views;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.task12;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// The venue a request is served for, taken from the X-Venue-Id header, and the DynamoDB keys that keep
+// each venue in its own partitions.
+// A user may only act for the venues of their "venue:<id>" Cognito groups, which pool administrators
+// assign; a user in none of them belongs to the default venue (see authorize).
+// Venue-day keys ("<venue>#<date>": the day listing and the occupancy bitmaps of the day) are split by
+// table number into VENUE_SHARDS shards for hot venues ("main=4,downtown=8"), so a busy date spreads its
+// index writes over several partitions and readers query each shard. The shard count is part of the keys:
+// it must not change once the venue has reservations.
+// Per-table keys (table items, tableDate, slot locks, occupancy bitmaps) carry the venue as a prefix,
+// except for the default venue: it keeps the keys of the single-venue layout, so items written before
+// venues existed stay addressable and only need their index attributes (see ReservationIndexMigration).
+final class Venue {
+    static final String HEADER = "X-Venue-Id";
+    static final String GROUP_PREFIX = "venue:";
+    // Tables: hash key of venue-index. Reservations: hash keys of venueDate-index and venueShard-index
+    static final String VENUE_KEY = "venue";
+    static final String VENUE_INDEX = "venue-index";
+    static final String VENUE_DATE_KEY = "venueDate";
+    static final String VENUE_DATE_INDEX = "venueDate-index";
+    static final String VENUE_SHARD_KEY = "venueShard";
+    static final String VENUE_SHARD_INDEX = "venueShard-index";
+
+    // A letter first: prefixed keys can never collide with the default venue's, which start with a number
+    private static final Pattern ID = Pattern.compile("[A-Za-z][A-Za-z0-9_-]{0,63}");
+    private static final int MAX_CACHED = 1024;
+    private static final Map<String, Integer> SHARDS = parseShards(ApiHandler.setting("VENUE_SHARDS"));
+    private static final String DEFAULT_ID = defaultId(ApiHandler.setting("DEFAULT_VENUE"));
+    private static final Map<String, Venue> venues = new ConcurrentHashMap<>();
+    private static final Venue DEFAULT = new Venue(DEFAULT_ID);
+
+    private final String id;
+    private final boolean isDefault;
+    private final int shards;
+    private final List<String> shardKeys;
+
+    private Venue(String id) {
+        this.id = id;
+        this.isDefault = id.equals(DEFAULT_ID);
+        this.shards = SHARDS.getOrDefault(id, 1);
+        List<String> keys = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            keys.add(shards == 1 ? id : id + "#" + shard);
+        }
+        this.shardKeys = Collections.unmodifiableList(keys);
+    }
+
+    static Venue defaultVenue() {
+        return DEFAULT;
+    }
+
+    // The header's venue, or the default one without it
+    static Venue resolve(String header) {
+        if (header == null || header.isEmpty() || header.equals(DEFAULT_ID)) {
+            return DEFAULT;
+        }
+        Venue venue = venues.get(header);
+        if (venue != null) {
+            return venue;
+        }
+        if (!ID.matcher(header).matches()) {
+            throw new IllegalArgumentException("Невірний заголовок " + HEADER);
+        }
+        // Будь-хто може надіслати довільний заголовок: кеш обмежений
+        return venues.size() < MAX_CACHED ? venues.computeIfAbsent(header, Venue::new) : new Venue(header);
+    }
+
+    // The requested venue when the verified user may act for it, null otherwise. Without the header it is the
+    // user's only venue, or the default one
+    static Venue authorize(VerifiedToken principal, String header) {
+        List<String> allowed = new ArrayList<>();
+        for (String group : principal.getGroups()) {
+            if (group.startsWith(GROUP_PREFIX)) {
+                allowed.add(group.substring(GROUP_PREFIX.length()));
+            }
+        }
+        Venue venue;
+        if (header == null || header.isEmpty()) {
+            venue = allowed.size() == 1 ? resolve(allowed.get(0)) : DEFAULT;
+        } else {
+            venue = resolve(header);
+        }
+        boolean permitted = allowed.isEmpty() ? venue.isDefault : allowed.contains(venue.id);
+        return permitted ? venue : null;
+    }
+
+    String id() {
+        return id;
+    }
+
+    String tableItemId(int tableId) {
+        return scoped(String.valueOf(tableId));
+    }
+
+    // The table id of a table item's key
+    static int tableIdOf(String itemId) {
+        return Integer.parseInt(itemId.substring(itemId.lastIndexOf('#') + 1));
+    }
+
+    String catalogItemId() {
+        return isDefault ? TableCatalog.VERSION_ITEM_ID : TableCatalog.VERSION_ITEM_ID + "#" + id;
+    }
+
+    String tableDateKey(int tableNumber, String date) {
+        return scoped(tableNumber + "#" + date);
+    }
+
+    // Venue-day key of the shard that holds this table's reservations and bitmap
+    String dayKey(int tableNumber, String date) {
+        return dayKey(date, shard(tableNumber));
+    }
+
+    // Venue-day keys of every shard, in shard order
+    List<String> dayKeys(String date) {
+        List<String> keys = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            keys.add(dayKey(date, shard));
+        }
+        return keys;
+    }
+
+    String shardKey(int tableNumber) {
+        return shardKeys.get(shard(tableNumber));
+    }
+
+    // Venue-wide keys of every shard, in shard order
+    List<String> shardKeys() {
+        return shardKeys;
+    }
+
+    private String dayKey(String date, int shard) {
+        return shards == 1 ? id + "#" + date : id + "#" + date + "#" + shard;
+    }
+
+    private int shard(int tableNumber) {
+        return Math.floorMod(tableNumber, shards);
+    }
+
+    private String scoped(String key) {
+        return isDefault ? key : id + "#" + key;
+    }
+
+    private static String defaultId(String configured) {
+        String id = configured != null && !configured.isEmpty() ? configured : "main";
+        if (!ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid DEFAULT_VENUE: " + id);
+        }
+        return id;
+    }
+
+    private static Map<String, Integer> parseShards(String configured) {
+        Map<String, Integer> shards = new HashMap<>();
+        if (configured == null || configured.isBlank()) {
+            return shards;
+        }
+        for (String entry : configured.split(",")) {
+            String[] venueAndShards = entry.trim().split("=");
+            int count = venueAndShards.length == 2 ? Integer.parseInt(venueAndShards[1].trim()) : 0;
+            if (count < 1) {
+                throw new IllegalArgumentException("Invalid VENUE_SHARDS entry: " + entry);
+            }
+            shards.put(venueAndShards[0].trim(), count);
+        }
+        return shards;
+    }
+}
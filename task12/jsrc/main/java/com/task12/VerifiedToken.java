@@ -0,0 +1,36 @@
+package com.task12;
+
+import java.util.List;
+
+// Claims of a verified id token
+class VerifiedToken {
+    private final String subject;
+    private final String email;
+    private final List<String> groups;
+    private final long expiresAt;
+
+    VerifiedToken(String subject, String email, List<String> groups, long expiresAt) {
+        this.subject = subject;
+        this.email = email;
+        this.groups = groups;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    // The cognito:groups claim; only pool administrators can change it
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    // Epoch seconds
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}